@@ -1,9 +1,15 @@
 package com.avaidyam.binoculars;
 
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.remoting.RemoteInvocation;
 import external.jaq.mpsc.MpscConcurrentQueue;
 
+import java.util.AbstractQueue;
+import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A Channel is a device for inbox/outbox style message-passing, where the
@@ -19,6 +25,11 @@ public class Channel {
      */
     public static final ConcurrentLinkedQueue<String> deadLetters = new ConcurrentLinkedQueue<>();
 
+    /**
+     * The size of the control lane, which only carries a few lifecycle messages.
+     */
+    public static int CONTROL_QUEUE_SIZE = 256;
+
     /**
      * The letter queue used for messages that don't need to be responded to.
      */
@@ -29,20 +40,164 @@ public class Channel {
      */
     public Queue outbox;
 
+    /**
+     * The letter queue used for lifecycle messages, always drained first (see Lane.CONTROL).
+     */
+    public Queue control;
+
+    /**
+     * The letter queue used for low priority messages (see Lane.BULK), created on first use.
+     */
+    public volatile Queue bulk;
+
     /**
      * The capacity of the inbox, useful for calculating pressure.
      */
     public int capacity;
 
+    /**
+     * What happens to messages sent while the inbox is full.
+     */
+    public final OverflowPolicy overflowPolicy;
+
+    /**
+     * The number of messages dropped or rejected by the overflow policy.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
     /**
      * Create a new Channel with a given queue size.
      *
      * @param queueSize initial inbox/outbox queue size.
      */
     public Channel(int queueSize) {
-        this.inbox = new MpscConcurrentQueue(queueSize);
+        this(queueSize, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Create a new Channel with a given queue size and inbox overflow policy.
+     *
+     * @param queueSize initial inbox/outbox queue size.
+     * @param overflowPolicy what happens to messages sent while the inbox is full
+     */
+    public Channel(int queueSize, OverflowPolicy overflowPolicy) {
         this.outbox = new MpscConcurrentQueue(queueSize);
-        this.capacity = ((MpscConcurrentQueue)this.inbox).getCapacity();
+        this.control = new MpscConcurrentQueue(CONTROL_QUEUE_SIZE);
+        this.capacity = ((MpscConcurrentQueue)this.outbox).getCapacity();
+        this.overflowPolicy = overflowPolicy;
+        this.inbox = newMailbox();
+    }
+
+    /**
+     * Creates a queue for regular messages honoring the overflow policy.
+     *
+     * @return a new mailbox queue
+     */
+    private Queue newMailbox() {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                return new EvictingQueue(this);
+            case SPILL:
+                return new SpillingQueue(new MpscConcurrentQueue(capacity));
+            default:
+                return new MpscConcurrentQueue(capacity);
+        }
+    }
+
+    /**
+     * Returns the queue messages in the given lane are put into.
+     *
+     * @param lane the lane of the message
+     * @return the queue of the lane
+     */
+    public Queue getLane(Lane lane) {
+        switch (lane) {
+            case CONTROL:
+                return control;
+            case HIGH:
+                return outbox;
+            case BULK:
+                Queue bulk = this.bulk;
+                if (bulk == null) {
+                    synchronized (this) {
+                        if (this.bulk == null)
+                            this.bulk = newMailbox();
+                        bulk = this.bulk;
+                    }
+                }
+                return bulk;
+            default:
+                return inbox;
+        }
+    }
+
+    /**
+     * Returns whether a message in the given lane can not be put right now without
+     * the sender blocking, because the lane is full and the overflow policy does not
+     * apply to it. Readers of shared connections use this to hold messages back
+     * instead of blocking.
+     *
+     * @param lane the lane of the message
+     * @return whether putting the message would block
+     */
+    public boolean isFull(Lane lane) {
+        Queue queue = getLane(lane);
+        if (!(queue instanceof MpscConcurrentQueue))
+            return false; // evicting and spilling mailboxes always take a message
+        if ((queue == inbox || queue == bulk) && overflowPolicy != OverflowPolicy.BLOCK)
+            return false;
+        return queue.size() >= ((MpscConcurrentQueue) queue).getCapacity();
+    }
+
+    /**
+     * Called by a Scheduler when a message could not be put into the given queue
+     * because it is full. Applies the overflow policy if the queue is the inbox.
+     *
+     * @param queue the full queue
+     * @param message the message that could not be put
+     * @return true if the message was dropped and the sender must not retry
+     */
+    public boolean rejectOverflow(Queue queue, Object message) {
+        if (queue != inbox && queue != bulk)
+            return false;
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                discard(message);
+                return true;
+            case FAIL_FAST:
+                if (!discard(message))
+                    throw Exceptions.MailboxOverflowException.INSTANCE;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Drops the given message, failing its Future if it has one.
+     *
+     * @param message the message to drop
+     * @return whether the message had a Future to report the error to
+     */
+    /*package*/ boolean discard(Object message) {
+        dropped.incrementAndGet();
+        if (message instanceof RemoteInvocation) {
+            Future futureCB = ((RemoteInvocation) message).getFutureCB();
+            if (futureCB != null) {
+                futureCB.complete(null, Exceptions.MailboxOverflowException.INSTANCE);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of messages dropped or rejected by the overflow policy.
+     *
+     * @return the number of messages dropped or rejected
+     */
+    public long getDroppedCount() {
+        return dropped.get();
     }
 
     /**
@@ -69,7 +224,18 @@ public class Channel {
      * @return estimation of all queued messages
      */
     public int getQSizes() {
-        return this.inbox.size() + this.outbox.size();
+        Queue bulk = this.bulk;
+        return this.inbox.size() + this.outbox.size() + this.control.size() + (bulk != null ? bulk.size() : 0);
+    }
+
+    /**
+     * Returns whether no messages are queued in any lane.
+     *
+     * @return whether all lanes are empty
+     */
+    public boolean isEmpty() {
+        Queue bulk = this.bulk;
+        return this.inbox.isEmpty() && this.outbox.isEmpty() && this.control.isEmpty() && (bulk == null || bulk.isEmpty());
     }
 
     /**
@@ -89,4 +255,135 @@ public class Channel {
     public boolean isOutboxPressured() {
         return this.outbox.size() * 2 > this.capacity;
     }
+
+    /**
+     * An inbox for OverflowPolicy.DROP_OLDEST. Senders only append, while the nucleus
+     * taking messages drops the oldest ones beyond the capacity before it takes the
+     * next one, so peek and poll are only ever called by a single consumer. Until the
+     * nucleus next takes messages, the queue may hold more than its capacity.
+     */
+    static class EvictingQueue extends AbstractQueue<Object> {
+
+        private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Channel channel;
+
+        EvictingQueue(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean offer(Object o) {
+            queue.offer(o);
+            size.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public Object poll() {
+            evictOverflow();
+            Object o = queue.poll();
+            if (o != null)
+                size.decrementAndGet();
+            return o;
+        }
+
+        @Override
+        public Object peek() {
+            evictOverflow();
+            return queue.peek();
+        }
+
+        /**
+         * Drops the oldest messages until no more than the capacity are left.
+         */
+        private void evictOverflow() {
+            while (size.get() > channel.capacity) {
+                Object evicted = queue.poll();
+                if (evicted == null)
+                    return;
+                size.decrementAndGet();
+                channel.discard(evicted);
+            }
+        }
+
+        @Override
+        public int size() {
+            return Math.min(size.get(), channel.capacity);
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return queue.iterator();
+        }
+    }
+
+    /**
+     * An inbox for OverflowPolicy.SPILL that puts messages into an unbounded linked
+     * segment once its ring buffer is full. While the segment holds messages, new
+     * ones are appended to it as well, so a sender's messages stay in order.
+     * Like the ring buffer, it does not support removing arbitrary elements.
+     */
+    static class SpillingQueue extends AbstractQueue<Object> {
+
+        private final MpscConcurrentQueue<Object> ring;
+        private final ConcurrentLinkedQueue<Object> spill = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger spilled = new AtomicInteger();
+
+        SpillingQueue(MpscConcurrentQueue<Object> ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public boolean offer(Object o) {
+            if (spilled.get() == 0 && ring.offer(o))
+                return true;
+            spilled.incrementAndGet();
+            spill.offer(o);
+            return true;
+        }
+
+        @Override
+        public Object poll() {
+            Object o = ring.poll();
+            if (o == null && spilled.get() > 0) {
+                o = spill.poll();
+                if (o != null)
+                    spilled.decrementAndGet();
+            }
+            return o;
+        }
+
+        @Override
+        public Object peek() {
+            Object o = ring.peek();
+            return o != null ? o : spill.peek();
+        }
+
+        @Override
+        public int size() {
+            return ring.size() + spilled.get();
+        }
+
+        /**
+         * Iterates the bounded part, then the spill segment. The iterator is weakly
+         * consistent and does not support removal.
+         */
+        @Override
+        public Iterator<Object> iterator() {
+            final Iterator<Object> bounded = ring.iterator();
+            final Iterator<Object> spilled = spill.iterator();
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return bounded.hasNext() || spilled.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return bounded.hasNext() ? bounded.next() : spilled.next();
+                }
+            };
+        }
+    }
 }
@@ -61,6 +61,24 @@ public class Exceptions {
 		}
 	}
 
+	/**
+	 * The MailboxOverflowException is thrown (or passed to the Future of the
+	 * message) when a message is dropped or rejected by the OverflowPolicy
+	 * of a receiving nuclei's full mailbox.
+	 *
+	 * Note: avoid instantiating this class; use the INSTANCE provided.
+	 * This Throwable is able to be quickly thrown since it does
+	 * not implement the fillInStackTrace() method.
+	 */
+	public static class MailboxOverflowException extends RuntimeException {
+		public static MailboxOverflowException INSTANCE = new MailboxOverflowException();
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
 	/**
 	 * A MustBeRunFromNucleusThreadException is thrown if the invocation
 	 * in question was not made from an Nucleus's thread.
@@ -31,6 +31,12 @@ public @interface Export {
      */
     boolean signalPriority() default false;
 
+    /**
+     * The lane of the receiver's Channel this method's messages are put into.
+     * Note: this has no effect when signalPriority is set, or for callbacks.
+     */
+    Lane lane() default Lane.NORMAL;
+
 	/**
 	 * parameters tagged as callback get wrapped by 'Nucleus.Callback' automatically. Calls on these object are
 	 * executed in the callers thread (enqueued to the calling Nucleus queue)
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The lanes of a Nucleus' Channel. Each lane is a separate queue, so messages in
+ * one lane never wait behind a backlog in a lower one. The Dispatcher always drains
+ * the control lane first, and shares the rest of each batch between the other lanes
+ * by weight (see Dispatcher.HIGH_LANE_WEIGHT and friends) so none of them starves.
+ *
+ * Messages of a single sender are only kept in order within the same lane.
+ */
+public enum Lane {
+
+    /**
+     * Lifecycle and health messages, i.e. asyncStop(). Keep these few and cheap.
+     */
+    CONTROL,
+
+    /**
+     * Callbacks, Future results and @Export(signalPriority) methods (the outbox).
+     */
+    HIGH,
+
+    /**
+     * Regular messages (the inbox).
+     */
+    NORMAL,
+
+    /**
+     * Throughput-oriented messages that may be delayed, i.e. logging or metrics.
+     */
+    BULK;
+
+    /**
+     * The lane of each Method sent so far.
+     */
+    private static final ConcurrentHashMap<Method, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the lane a message for the given method is put into.
+     *
+     * @param method the method being invoked
+     * @return the lane declared by its @Export annotation, or NORMAL
+     */
+    public static Lane of(Method method) {
+        Lane lane = lanes.get(method);
+        if (lane == null) {
+            Export export = method.getAnnotation(Export.class);
+            lane = export == null ? NORMAL : export.signalPriority() ? HIGH : export.lane();
+            lanes.put(method, lane);
+        }
+        return lane;
+    }
+}
@@ -31,11 +31,10 @@ import com.avaidyam.binoculars.remoting.asyncio.WrapperExecutorService;
 import com.avaidyam.binoculars.scheduler.Dispatcher;
 import com.avaidyam.binoculars.scheduler.ElasticScheduler;
 import com.avaidyam.binoculars.scheduler.Scheduler;
+import com.avaidyam.binoculars.scheduler.TimerWheel;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -114,9 +113,9 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
     }
 
     /**
-     * The Timer used by Nuclei to schedule delayed invocations.
+     * The TimerWheel used by Nuclei to schedule delayed invocations.
      */
-    public static Timer delayedCalls = new Timer();
+    public static TimerWheel delayedCalls = ElasticScheduler.delayedCalls;
 
     /**
      * The default Nucleus Scheduler.
@@ -180,7 +179,37 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
      */
     @SuppressWarnings("unchecked")
     public static <T extends Nucleus> T of(Class<T> actorClazz, Scheduler scheduler, int qsize) {
-        T a = (T) Nucleus.newProxy(actorClazz, scheduler, qsize);
+        return of(actorClazz, scheduler, qsize, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * create an new nuclei whose mailbox applies the given policy once it is full,
+     * i.e. to shed load instead of blocking its senders.
+     *
+     * @param actorClazz
+     * @param overflowPolicy
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Nucleus> T of(Class<T> actorClazz, OverflowPolicy overflowPolicy) {
+        return of(actorClazz, defaultScheduler.get(), -1, overflowPolicy);
+    }
+
+    /**
+     * create an new nuclei dispatched in the given Dispatcher, whose mailbox applies
+     * the given policy once it is full.
+     *
+     * @param actorClazz
+     * @param scheduler
+     * @param qsize
+     * @param overflowPolicy
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Nucleus> T of(Class<T> actorClazz, Scheduler scheduler, int qsize, OverflowPolicy overflowPolicy) {
+        T a = (T) Nucleus.newProxy(actorClazz, scheduler, qsize, overflowPolicy);
 		a.init(); // queues a constructor call
 		return a;
     }
@@ -191,10 +220,11 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
      * @param clz
      * @param sched
      * @param qsize
+     * @param overflowPolicy
      * @param <T>
      * @return
      */
-    private static <T extends Nucleus> T newProxy(Class<T> clz, Scheduler sched, int qsize) {
+    private static <T extends Nucleus> T newProxy(Class<T> clz, Scheduler sched, int qsize, OverflowPolicy overflowPolicy) {
         if (sched == null && Thread.currentThread() instanceof Dispatcher)
             sched = ((Dispatcher) Thread.currentThread()).getScheduler();
         try {
@@ -210,7 +240,7 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
             T realNucleus = clz.newInstance();
             T selfproxy = NucleusProxifier.instantiateProxy(realNucleus);
 
-            realNucleus.__channel = new Channel(qsize);
+            realNucleus.__channel = new Channel(qsize, overflowPolicy);
             realNucleus.__scheduler = disp.getScheduler();
             realNucleus.__dispatcher = disp;
             realNucleus.__self = selfproxy;
@@ -252,14 +282,10 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
      *
      * @param millis
      * @param task
+     * @return a Handle which may be used to cancel the task
      */
-    public static void submitDelayed(long millis, final Runnable task) {
-        Nucleus.delayedCalls.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                task.run();
-            }
-        }, millis);
+    public static TimerWheel.Handle submitDelayed(long millis, final Runnable task) {
+        return Nucleus.delayedCalls.schedule(millis, task);
     }
 
 	/**
@@ -311,7 +337,17 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
      */
     public SELF getNucleus() {
         //noinspection unchecked
-        return (SELF)this;
+        return (SELF)__getTarget();
+    }
+
+    /**
+     * Overridden by generated proxies to return the nuclei they wrap. Unlike getNucleus,
+     * its return type does not depend on SELF, which a nuclei class may bind to another class.
+     *
+     * @return the underlying nuclei instance
+     */
+    protected Nucleus __getTarget() {
+        return this;
     }
 
     /**
@@ -326,7 +362,7 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
 
 	// internal. tweak to check for remote ref before sending
     // Don't actually use!
-    @Export(transport=false)
+    @Export(transport=false, lane=Lane.CONTROL)
     public void asyncStop() {
 		deinit(); // IS NOT QUEUED! locally executed
         __stop();
@@ -494,7 +530,7 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
 	 * Close refers to "unmapping" the nuclei, underlying network connections will not be
 	 * closed (else server down on single client disconnect)
 	 */
-    @Export(transport=false)
+    @Export(transport=false, lane=Lane.CONTROL)
     public void close() {
         if (__connections != null) {
             final ConcurrentLinkedQueue<RemoteConnection> prevCon = getNucleusRef().__connections;
@@ -595,6 +631,16 @@ public class Nucleus<SELF extends Nucleus> implements Serializable, Executor, Au
         return __scheduler.enqueueCall(null, sender.get(), receiver, methodName, args, isCB);
     }
 
+    // same as above, but for callers which have already resolved the method (i.e. generated proxies)
+    public Object __enqueueCall(Nucleus receiver, Method method, Object args[], boolean isCB) {
+        if (__stopped) {
+            if (method.getName().equals("stop")) // ignore double stop
+                return null;
+            __addDeadLetter(receiver, method.getName());
+        }
+        return __scheduler.enqueueCall(null, sender.get(), receiver, method, args, isCB);
+    }
+
 
     public void __addDeadLetter(Nucleus receiver, String methodName) {
         String senderString = sender.get() == null ? "null" : sender.get().getClass().getName();
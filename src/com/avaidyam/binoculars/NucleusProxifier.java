@@ -6,18 +6,20 @@ import javassist.Modifier;
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.NamingStrategy;
 import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.implementation.FieldAccessor;
 import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.implementation.bind.annotation.AllArguments;
+import net.bytebuddy.implementation.bind.annotation.FieldValue;
 import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
-import net.bytebuddy.implementation.bind.annotation.This;
 import org.nustaq.serialization.util.FSTUtil;
 
 import java.io.Externalizable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static net.bytebuddy.description.modifier.Visibility.PUBLIC;
@@ -54,21 +56,6 @@ public enum NucleusProxifier {;
         return instance;
     }
 
-    /**
-     * Get the proxy instance's underlying target.  This is the actual object that
-     * will receive all the queued method invocations made by the proxy.
-     *
-     * @param instance the proxy instance
-     * @param <T> the type of the nucleus proxied
-     * @return the underlying target
-     * @throws Exception
-     */
-    private static <T extends Nucleus> T getTarget(T instance) throws Exception {
-        Field f = instance.getClass().getField("__target");
-        //noinspection unchecked
-        return (T)f.get(instance);
-    }
-
     /**
      * Generate and instantiate a proxy/wrapper for the given target nucleus.
      *
@@ -93,7 +80,7 @@ public enum NucleusProxifier {;
         // of re-generating new nuclei proxies.
         Class<?> proxyClass = null;
         if (!_pregenerated.containsKey(targetClass)) {
-            proxyClass = new ByteBuddy()
+            DynamicType.Builder<? extends Nucleus> builder = new ByteBuddy()
                     .with(new NamingStrategy.AbstractBase() {
                         protected String name(TypeDescription t) {
                             return t.getName() + "_NucleusProxy";
@@ -102,19 +89,28 @@ public enum NucleusProxifier {;
                     .subclass(targetClass)
                     .implement(Externalizable.class, Nucleus.Proxy.class)
                     .defineField("__target", targetClass, PUBLIC)
-                    .method(returns(Nucleus.class).and(isPublic()).and(named("getNucleus")))
-                    .intercept(FieldAccessor.ofField("__target"))
-                    .method(isPublic()
-                            .and(not(isAbstract()))
-                            .and(not(isNative()))
-                            .and(not(isFinal()))
-                            .and(not(isStatic()))
-                            .and(not(named("self")))
-                            .and(returns(void.class)
-                                    .or(returns(Future.class))
-                                    .or(returns(CompletableFuture.class)))
-                            .and(isAnnotatedWith(Export.class)))
-                    .intercept(MethodDelegation.to(ProxyInterceptor.class))
+                    .method(named("__getTarget").and(takesArguments(0)))
+                    .intercept(FieldAccessor.ofField("__target"));
+
+            // Each exported method is bound to its own ProxyInterceptor instance,
+            // so nothing about the method has to be looked up again per call.
+            for (Method method : targetClass.getMethods()) {
+                if (!method.isAnnotationPresent(Export.class) || method.isBridge())
+                    continue;
+                builder = builder
+                        .method(is(method)
+                                .and(not(isAbstract()))
+                                .and(not(isNative()))
+                                .and(not(isFinal()))
+                                .and(not(isStatic()))
+                                .and(not(named("self")))
+                                .and(returns(void.class)
+                                        .or(returns(Future.class))
+                                        .or(returns(CompletableFuture.class))))
+                        .intercept(MethodDelegation.to(new ProxyInterceptor(method)).filter(named("intercept")));
+            }
+
+            proxyClass = builder
                     .make()
                     .load(targetClass.getClassLoader(), WRAPPER)
                     .getLoaded();
@@ -134,33 +130,54 @@ public enum NucleusProxifier {;
      * Methods intercepted by the ProxyInterceptor will be enqueued on the target and
      * executed asynchronously. If an argument has an InThread annotation, it will be
      * evaluated first, then the method will be enqueued.
+     *
+     * One ProxyInterceptor is generated per exported method, with the Method itself,
+     * the indices of its InThread parameters and its signal priority resolved up front.
      */
     public static class ProxyInterceptor {
-        @RuntimeType
-        @SuppressWarnings("unused")
-        public static Object intercept(@AllArguments Object[] allArguments, @This Nucleus _this, @Origin Method method) throws Exception {
-
-            // TODO: This needs to be generated...
+        private final Method method;
+        private final int[] inThreadArgs;
+        private final boolean isSignal;
+        private final Class<?> returnType;
+
+        /**
+         * Create a new ProxyInterceptor for the given exported method.
+         *
+         * @param method the method to intercept
+         */
+        public ProxyInterceptor(Method method) {
             Annotation[][] params = method.getParameterAnnotations();
+            int[] inThread = new int[params.length];
+            int count = 0;
             for (int i = 0; i < params.length; i++) {
                 for (Annotation a : params[i]) {
-                    if (a.annotationType().equals(Export.InThread.class) && allArguments[i] != null) {
-                        Nucleus sender = Nucleus.sender.get();
-                        if (sender != null)
-                            allArguments[i] = sender.__scheduler.inThread(sender.__self, allArguments[i]);
+                    if (a.annotationType().equals(Export.InThread.class)) {
+                        inThread[count++] = i;
                         break;
                     }
                 }
             }
 
-            // TODO: Use MethodHandle instead.
-            //MethodHandle m = MethodHandles.lookup().unreflect(method);
-            //Object res = m.invokeExact(allArguments);
-
             Export a = method.getAnnotation(Export.class);
-            boolean isSignal = a != null && a.signalPriority();
-            Object result = getTarget(_this).__enqueueCall(getTarget(_this), method.getName(), allArguments, isSignal);
-            return method.getReturnType().cast(result);
+            this.method = method;
+            this.inThreadArgs = Arrays.copyOf(inThread, count);
+            this.isSignal = a != null && a.signalPriority();
+            this.returnType = method.getReturnType();
+        }
+
+        @RuntimeType
+        @SuppressWarnings("unused")
+        public Object intercept(@AllArguments Object[] allArguments, @FieldValue("__target") Nucleus target) throws Exception {
+            for (int i : inThreadArgs) {
+                if (allArguments[i] != null) {
+                    Nucleus sender = Nucleus.sender.get();
+                    if (sender != null)
+                        allArguments[i] = sender.__scheduler.inThread(sender.__self, allArguments[i]);
+                }
+            }
+
+            Object result = target.__enqueueCall(target, method, allArguments, isSignal);
+            return returnType.cast(result);
         }
     }
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars;
+
+/**
+ * Determines what happens to a message sent to a Nucleus whose mailbox is full.
+ * Callbacks are never subject to the policy, as dropping them would leave
+ * Futures unresolved; a full callback queue always blocks the sender.
+ *
+ * Dropped or rejected messages returning a Future have it completed with
+ * Exceptions.MailboxOverflowException, and are counted by Channel.getDroppedCount().
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The sender spins, yields and parks until there is room (the default).
+     */
+    BLOCK,
+
+    /**
+     * The message being sent is dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest pending messages beyond the capacity are dropped once the
+     * nucleus takes its next message.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The message being sent is rejected: its Future fails, or if it has
+     * none, Exceptions.MailboxOverflowException is thrown to the sender.
+     */
+    FAIL_FAST,
+
+    /**
+     * The message is kept in an unbounded overflow segment until the
+     * mailbox has been drained.
+     */
+    SPILL
+}
@@ -25,12 +25,14 @@ package com.avaidyam.binoculars.future;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.scheduler.Dispatcher;
 import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+import com.avaidyam.binoculars.scheduler.TimerWheel;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -75,23 +77,30 @@ Future will contain the exception/value of the original Future, unless the funct
 /** ALLOW ONERROR(EXCEPTION_CLASS, HANDLER) FOR SPECIFIC EXCEPTION TYPES */
 
 public class CompletableFuture<T> implements Future<T> {
-    // probably unnecessary, increases cost
-    // of allocation. However for now stay safe and optimize
-    // from a proven-working implementation
-    // note: if removed some field must set to volatile
-    final AtomicBoolean lock = new AtomicBoolean(false); // (AtomicFieldUpdater is slower!)
 
-    // Main components of Future.
+    // The state word is null or a stack of Listeners while pending, and
+    // COMPLETED once settled. Listeners are pushed and the stack is taken
+    // over by CAS, so neither registration nor completion ever waits.
+    private static final Object COMPLETED = new Object();
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<CompletableFuture, Object> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(CompletableFuture.class, Object.class, "state");
+
+    // The claim word decides which of several racing completions wins,
+    // and remembers whether the winner was a timeout.
+    private static final int UNCLAIMED = 0, CLAIMED = 1, TIMED_OUT = 2;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<CompletableFuture> CLAIM =
+            AtomicIntegerFieldUpdater.newUpdater(CompletableFuture.class, "claim");
+
+    private volatile Object state;
+    private volatile int claim;
+
+    // Main components of Future, published by the write of COMPLETED.
     protected T result = null;
     protected Throwable error = null;
 
     String id;
-    Future nextFuture;
-    protected Signal resultReceiver;
-
-    // fixme: use bits
-    protected volatile boolean hadResult;
-    protected boolean hasFired;
 
     public static Void NULL = (Void)null;
 
@@ -139,26 +148,18 @@ public class CompletableFuture<T> implements Future<T> {
 	    if(futures == null || futures.size() <= 0)
 		    return new CompletableFuture<>(new ArrayList<>());
 
+        // count down instead of chaining, so settled futures don't recurse
         CompletableFuture<List<Future<T>>> res = new CompletableFuture<>();
-        //List<Future<T>> allRes = new ArrayList<>(futures.size());
-
-	    _awaitSettle(futures, 0, res);
-
-        //for(int i = 0; i < futures.size() - 1; i++)
-        //    allRes.add(futures.get(i).then(futures.get(i)));
-        //allRes.add(futures.get(futures.size() - 1).then((r, e) -> res.complete(allRes, null)));
-
+        AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (Future<T> future : futures) {
+            future.then((r, e) -> {
+                if (remaining.decrementAndGet() == 0)
+                    res.complete(futures, null);
+            });
+        }
         return res;
     }
 
-	// Helper
-	private static <T> void _awaitSettle(final List<Future<T>> futures, final int index,
-	                                     final Future<List<Future<T>>> result) {
-		if (index < futures.size())
-			futures.get(index).then((r, e) -> _awaitSettle(futures, index + 1, result));
-		else result.complete(futures, null);
-	}
-
     /**
      * similar to es6 CompletableFuture.race method, however non-Future objects are not allowed
      * <p>
@@ -227,7 +228,8 @@ public class CompletableFuture<T> implements Future<T> {
     public CompletableFuture(T result, Throwable error) {
         this.result = result;
         this.error = error;
-        hadResult = true;
+        this.claim = error instanceof Timeout ? TIMED_OUT : CLAIMED;
+        this.state = COMPLETED;
     }
 
     /**
@@ -355,77 +357,34 @@ public class CompletableFuture<T> implements Future<T> {
     }
 
     public void timedOut(Timeout to) {
-        if (!hadResult)
-            complete(null, to);
+        tryComplete(null, to);
     }
 
     @Override
     public Future<T> then(Signal<T> resultCB) {
-        // FIXME: this can be implemented more efficient
-        while (!lock.compareAndSet(false, true));
-
-        try {
-            if (resultReceiver != null)
-                throw new RuntimeException("Double register of future listener");
-            resultReceiver = resultCB;
-            if (hadResult) {
-                hasFired = true;
-                if (nextFuture == null) {
-                    nextFuture = new CompletableFuture(result, error);
-                    lock.set(false);
-                    resultCB.complete(result, error);
-                } else {
-                    lock.set(false);
-                    resultCB.complete(result, error);
-                    nextFuture.complete(result, error);
-                    return nextFuture;
-                }
-            }
-            if (resultCB instanceof Future)
-                return (Future<T>)resultCB;
-            lock.set(false);
-            while (!lock.compareAndSet(false, true));
-
-            if (nextFuture == null) {
-                return nextFuture = new CompletableFuture();
-            } else {
-                return nextFuture;
-            }
-        } finally {
-            lock.set(false);
+        if (resultCB instanceof Future) {
+            addListener(resultCB, null);
+            return (Future<T>)resultCB;
         }
+        if (state == COMPLETED) {
+            resultCB.complete(result, error);
+            return new CompletableFuture<>(result, error);
+        }
+        CompletableFuture<T> next = new CompletableFuture<>();
+        addListener(resultCB, next);
+        return next;
     }
 
     /**
-     * special method for tricky things. Creates a nextFuture or returns it.
-     * current
+     * special method for tricky things. Returns a new future which is
+     * completed with the result of this one.
      *
      * @return
      */
     public CompletableFuture getNext() {
-        while (!lock.compareAndSet(false, true)) {
-        }
-        try {
-            if (nextFuture == null)
-                return new CompletableFuture();
-            else
-                return (CompletableFuture) nextFuture;
-        } finally {
-            lock.set(false);
-        }
-    }
-
-    public CompletableFuture getLast() {
-        while (!lock.compareAndSet(false, true)) {
-        }
-        try {
-            if (nextFuture == null)
-                return this;
-            else
-                return ((CompletableFuture) nextFuture).getLast();
-        } finally {
-            lock.set(false);
-        }
+        CompletableFuture next = new CompletableFuture();
+        addListener(next, null);
+        return next;
     }
 
     /**
@@ -434,67 +393,84 @@ public class CompletableFuture<T> implements Future<T> {
      * @param resultCB
      */
     public void finallyDo(Signal resultCB) {
-        // FIXME: this can be implemented more efficient
-        while (!lock.compareAndSet(false, true)) {
-        }
-        try {
-            if (resultReceiver != null)
-                throw new RuntimeException("Double register of future listener");
-            resultReceiver = resultCB;
-            if (hadResult) {
-                hasFired = true;
-                lock.set(false);
-                resultCB.complete(result, error);
+        addListener(resultCB, null);
+    }
+
+    /**
+     * Registers a listener, or fires it right away if this future is
+     * already complete. Any number of listeners may be registered; they
+     * fire in the order they were registered.
+     *
+     * @param signal the listener to fire
+     * @param next an optional future to complete after the listener
+     */
+    private void addListener(Signal signal, Future next) {
+        Listener node = null;
+        for (;;) {
+            Object s = state;
+            if (s == COMPLETED) {
+                fire(signal, next);
+                return;
             }
-        } finally {
-            lock.set(false);
+            if (node == null)
+                node = new Listener(signal, next);
+            node.prev = (Listener)s;
+            if (STATE.compareAndSet(this, s, node))
+                return;
         }
     }
 
+    private void fire(Signal signal, Future next) {
+        signal.complete(result, error);
+        if (next != null)
+            next.complete(result, error);
+    }
+
     /**
+     * Completes this future unless it has already been completed.
      *
-     * @param res
-     * @param error
+     * @param res the result
+     * @param error the error, or null
+     * @return true if this call completed the future
      */
-    @Override
-    public final void complete(T res, Throwable error) {
-	    this.result = res;
-        Throwable prevErr = this.error;
+    protected final boolean tryComplete(T res, Throwable error) {
+        if (!CLAIM.compareAndSet(this, UNCLAIMED, error instanceof Timeout ? TIMED_OUT : CLAIMED))
+            return false;
+        this.result = res;
         this.error = error;
 
-        while (!lock.compareAndSet(false, true));
+        // Take over the listeners, then reverse them into registration order.
+        Listener node = (Listener)STATE.getAndSet(this, COMPLETED), ordered = null;
+        while (node != null) {
+            Listener prev = node.prev;
+            node.prev = ordered;
+            ordered = node;
+            node = prev;
+        }
 
-        try {
-            if (hadResult) {
-                if (prevErr instanceof Timeout) {
-                    this.error = prevErr;
-                    lock.set(false);
-                    return;
-                }
-                lock.set(false);
-                throw new RuntimeException("Double result received on future " + prevErr);
-            }
-            hadResult = true;
-            if (resultReceiver != null) {
-                if (hasFired) {
-                    lock.set(false);
-                    throw new RuntimeException("Double fire on callback");
-                }
-                hasFired = true;
-                lock.set(false);
-                resultReceiver.complete(result, error);
-                resultReceiver = null;
-                while (!lock.compareAndSet(false, true)) {
-                }
-                if (nextFuture != null) {
-                    lock.set(false);
-                    nextFuture.complete(result, error);
-                }
-                return;
+        Throwable failure = null;
+        for (; ordered != null; ordered = ordered.prev) {
+            try {
+                fire(ordered.signal, ordered.next);
+            } catch (Throwable t) {
+                if (failure == null)
+                    failure = t;
             }
-        } finally {
-            lock.set(false);
         }
+        if (failure != null)
+            throwException(failure);
+        return true;
+    }
+
+    /**
+     *
+     * @param res
+     * @param error
+     */
+    @Override
+    public final void complete(T res, Throwable error) {
+        if (!tryComplete(res, error) && claim != TIMED_OUT)
+            throw new RuntimeException("Double result received on future " + this.error);
     }
 
     /**
@@ -552,12 +528,15 @@ public class CompletableFuture<T> implements Future<T> {
 
         if (Thread.currentThread() instanceof Dispatcher) {
             Dispatcher dt = (Dispatcher)Thread.currentThread();
-            dt.defer2(endtime, this);
+            dt.suspend(endtime, this);
             return this;
-        } else { // if outside of nuclei machinery, just block (warning actually polls)
-            // FIXME: Switch to CountDownLatch
+        } else if (!isComplete()) { // if outside of nuclei machinery, block until woken up
+            final Thread waiter = Thread.currentThread();
+            finallyDo((r, e) -> LockSupport.unpark(waiter));
             while (!isComplete()) {
-                LockSupport.parkNanos(1000 * 500);
+                if (endtime == 0)
+                    LockSupport.park(this);
+                else LockSupport.parkNanos(this, Math.max(1, endtime - System.currentTimeMillis()) * 1000 * 1000);
                 if ( endtime != 0 && System.currentTimeMillis() > endtime ) {
                     timedOut(Timeout.INSTANCE);
                     break;
@@ -569,28 +548,17 @@ public class CompletableFuture<T> implements Future<T> {
 
     @Override
     public Future timeoutIn(long timeout, TimeUnit timeUnit) {
-        final Nucleus nucleus = Nucleus.sender.get();
-        if (nucleus != null) {
-            try {
-                Method m = nucleus.getClass().getDeclaredMethod("delayed", Long.TYPE, Runnable.class);
-                m.setAccessible(true);
-                m.invoke(nucleus, timeUnit.toMillis(timeout), (Runnable)() -> timedOut(Timeout.INSTANCE));
-                return this;
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                // silent... sshhh....
-                // should forward directly to ElasticScheduler
-            }
-
-            // old method: but we're not protected-privileged!
-            //nuclei.delayed(millis, () -> timedOut(Timeout.INSTANCE));
-        }
+        if (isComplete())
+            return this;
 
-        ElasticScheduler.delayedCalls.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                timedOut(Timeout.INSTANCE);
-            }
-        }, timeUnit.toMillis(timeout));
+        // time out in the calling nucleus' thread if there is one, and take
+        // the timeout off the wheel as soon as this future completes
+        final Runnable onTimeout = () -> timedOut(Timeout.INSTANCE);
+        final Nucleus nucleus = Nucleus.sender.get();
+        final TimerWheel.Handle handle = nucleus != null
+                ? nucleus.__scheduler.delayedCall(timeUnit.toMillis(timeout), nucleus.__scheduler.inThread(nucleus.__self, onTimeout))
+                : ElasticScheduler.delayedCalls.schedule(timeout, timeUnit, onTimeout);
+        finallyDo((r, e) -> handle.cancel());
         return this;
     }
 
@@ -599,17 +567,12 @@ public class CompletableFuture<T> implements Future<T> {
     }
 
     public boolean isComplete() {
-        return hadResult;
+        return state == COMPLETED;
     }
 
     // debug
     public boolean _isHadResult() {
-        return hadResult;
-    }
-
-    // debug
-    public boolean _isHasFired() {
-        return hasFired;
+        return isComplete();
     }
 
     @Override
@@ -619,6 +582,20 @@ public class CompletableFuture<T> implements Future<T> {
         else return "CompletableFuture{}";
     }
 
+    /**
+     * A registered listener, linked to the one registered before it.
+     */
+    private static final class Listener {
+        final Signal signal;
+        final Future next;
+        Listener prev;
+
+        Listener(Signal signal, Future next) {
+            this.signal = signal;
+            this.next = next;
+        }
+    }
+
     /**
      * A yield failed in the execution of the future.
      */
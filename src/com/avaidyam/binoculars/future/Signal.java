@@ -37,14 +37,24 @@ public interface Signal<T> extends Serializable {
     /**
      * use value as error to indicate more messages are to come (else remoting will close channel).
      */
-	Error CONT = new Error("CNT");
+	Error CONT = new Continue();
+
+    /**
+     * The class of CONT only. A CONT received from remote is read as CONT again
+     * (see ContinueSerializer), so it can always be compared by identity.
+     */
+    final class Continue extends Error {
+        private Continue() {
+            super("CNT");
+        }
+    }
 
 	static boolean isComplete(Object error) {
 		return error == null;
 	}
 
 	static boolean isCont(Object o) {
-        return CONT.equals(o);
+        return o == CONT;
     }
 
 	static boolean isResult(Object error) {
@@ -52,7 +62,7 @@ public interface Signal<T> extends Serializable {
 	}
 
 	static boolean isError(Object o) {
-        return o != null && !CONT.equals(o);
+        return o != null && !isCont(o);
     }
 
     void complete(T result, Throwable error);
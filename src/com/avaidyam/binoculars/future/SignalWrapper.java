@@ -26,6 +26,7 @@ import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.remoting.RemoteInvocation;
 import com.avaidyam.binoculars.Log;
 import com.avaidyam.binoculars.remoting.base.RemotedCallback;
+import com.avaidyam.binoculars.scheduler.InvocationPool;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
@@ -60,6 +61,14 @@ public class SignalWrapper<T> implements Future<T>, Serializable {
         return realSignal;
     }
 
+    /**
+     * Returns the Nucleus whose outbox the result is put into, or null if the
+     * result is passed on in the completing thread.
+     */
+    public Nucleus getTargetNucleus() {
+        return targetNucleus;
+    }
+
     @Override
     public void complete(T result, Throwable error) {
         if (realSignal == null)
@@ -72,7 +81,7 @@ public class SignalWrapper<T> implements Future<T>, Serializable {
                 Log.w(this.toString(), "", e);
             }
         } else {
-            RemoteInvocation ce = new RemoteInvocation<>(realSignal, receiveRes, new Object[]{result, error},
+            RemoteInvocation ce = InvocationPool.obtain(realSignal, receiveRes, new Object[]{result, error},
                                            Nucleus.sender.get(), targetNucleus, true);
             targetNucleus.__scheduler.put2QueuePolling(targetNucleus.__channel.outbox, true, ce, targetNucleus);
         }
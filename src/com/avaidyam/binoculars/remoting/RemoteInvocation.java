@@ -26,20 +26,23 @@ import com.avaidyam.binoculars.Message;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
 import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.scheduler.InvocationPool;
 
 import java.lang.reflect.Method;
 
 public class RemoteInvocation<T> implements Message<T> {
 
-    final private Method method;
-    final private Object[] args;
+    private Method method;
+    private Object[] args;
     private Future futureCB;
 
-    transient final private T target;    // target and target nuclei are not necessary equal. E.g. target can be callback, but calls are put onto sendingNucleus Q
+    transient private T target;    // target and target nuclei are not necessary equal. E.g. target can be callback, but calls are put onto sendingNucleus Q
     transient private Nucleus sendingNucleus; // defines the sender of this message. null in case of outside call
     transient private Nucleus targetNucleus;  // defines nuclei assignment in case target is callback
     transient private boolean onCBQueue;  // determines queue used
     transient private RemoteRegistry remoteRegistry; // remote connection call came from
+    transient private InvocationPool pool; // pool to return to after processing, null if not pooled
+    transient private boolean released; // set once processed, cleared when handed out again by the InvocationPool
 
     public RemoteInvocation(T target, Method method, Object[] args, Nucleus sender, Nucleus targetNucleus, boolean isCB) {
         this.target = target;
@@ -50,23 +53,78 @@ public class RemoteInvocation<T> implements Message<T> {
         this.onCBQueue = isCB;
     }
 
+    /**
+     * Re-initializes a recycled envelope. Only to be called by the InvocationPool.
+     */
+    public void reuse(T target, Method method, Object[] args, Nucleus sender, Nucleus targetNucleus, boolean isCB) {
+        this.target = target;
+        this.method = method;
+        this.args = args;
+        this.sendingNucleus = sender;
+        this.targetNucleus = targetNucleus;
+        this.onCBQueue = isCB;
+        this.released = false;
+    }
+
+    /**
+     * Drops all references held by this envelope once it has been processed.
+     * Only to be called by the InvocationPool. Any later access to this envelope
+     * fails if InvocationPool.DEBUG_RECYCLING is enabled.
+     */
+    public void release() {
+        if (released)
+            throw new IllegalStateException("RemoteInvocation released twice.");
+        this.released = true;
+        this.target = null;
+        this.method = null;
+        this.args = null;
+        this.futureCB = null;
+        this.sendingNucleus = null;
+        this.targetNucleus = null;
+        this.remoteRegistry = null;
+        this.pool = null;
+    }
+
+    private void checkReleased() {
+        if (released)
+            throw new IllegalStateException("RemoteInvocation used after release.");
+    }
+
+    public InvocationPool getPool() {
+        return pool;
+    }
+
+    public void setPool(InvocationPool pool) {
+        this.pool = pool;
+    }
+
     public Nucleus getTargetNucleus() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return targetNucleus;
     }
 
     public T getTarget() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return target;
     }
 
     public Method getMethod() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return method;
     }
 
     public Object[] getArgs() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return args;
     }
 
     public Nucleus getSendingNucleus() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return sendingNucleus;
     }
 
@@ -107,6 +165,8 @@ public class RemoteInvocation<T> implements Message<T> {
     }
 
     public Future getFutureCB() {
+        if (InvocationPool.DEBUG_RECYCLING)
+            checkReleased();
         return futureCB;
     }
 
@@ -116,6 +176,8 @@ public class RemoteInvocation<T> implements Message<T> {
 
     @Override
     public String toString() {
+        if (method == null)
+            return "RemoteInvocation{released}";
         return "RemoteInvocation{" +
                 "method=" + method.getName() +
 //                   ", args=" + Arrays.toString(args) +
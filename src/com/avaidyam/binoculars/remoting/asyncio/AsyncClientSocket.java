@@ -32,24 +32,20 @@ import org.nustaq.offheap.BinaryQueue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
 import java.util.function.BiFunction;
 
 /**
  *
+ * Connects asynchronously, the connection is serviced by the threads of the SelectorPool.
  *
  * ALPHA has serious issues.
  *
  */
-public class AsyncClientSocket implements Runnable {
+public class AsyncClientSocket implements SelectorPool.Handler {
 
     SocketChannel channel;
-    Selector selector;
     BiFunction<SelectionKey,SocketChannel,AsyncSocketConnection> connectionFactory;
     AsyncSocketConnection con;
     CompletableFuture connectFuture;
@@ -59,92 +55,41 @@ public class AsyncClientSocket implements Runnable {
             throw new RuntimeException("illegal state, connect is underway");
         }
         connectFuture = new CompletableFuture<>();
+        CompletableFuture result = connectFuture;
         this.connectionFactory = connectionFactory;
         try {
             channel = SocketChannel.open();
             channel.configureBlocking(false);
-            selector = Selector.open();
-            channel.register(selector, SelectionKey.OP_CONNECT | SelectionKey.OP_READ | SelectionKey.OP_WRITE );
             channel.connect(new InetSocketAddress(host, port));
-            Nucleus.current().execute(this);
+            SelectorPool.get().next().register(channel, SelectionKey.OP_CONNECT, this);
         } catch (Exception e) {
             connectFuture.reject(e);
             connectFuture = null;
         }
-        return connectFuture;
+        return result;
     }
 
     @Override
-    public void run() {
-        boolean hadStuff = false;
+    public void selected(SelectionKey key) {
+        if ( !key.isConnectable() || connectFuture == null )
+            return;
+        CompletableFuture result = connectFuture;
+        connectFuture = null;
+        key.cancel(); // the connection registers itself with its own selector thread
         try {
-            selector.selectNow();
-            Set<SelectionKey> selectionKeys = selector.selectedKeys();
-            for (Iterator<SelectionKey> iterator = selectionKeys.iterator(); iterator.hasNext(); ) {
-                SelectionKey key = iterator.next();
-                if (key.isConnectable() && connectFuture != null ) {
-                    boolean connected = channel.finishConnect();
-                    con = connectionFactory.apply(key,channel);
-                    iterator.remove();
-                    connectFuture.complete();
-                    connectFuture = null;
-                }
-                if ( con != null ) {
-                    boolean wrote = false;
-                    if (key.isWritable()) {
-                        ByteBuffer writingBuffer = con.getWritingBuffer();
-                        if ( writingBuffer != null ) {
-                            int written = channel.write(writingBuffer);
-                            if (written<0) {
-                                wrote = true;
-                                iterator.remove();
-                                key.cancel();
-                                // closed
-                                con.writeFinished(new IOException("disconnected"));
-                            } else
-                            if ( writingBuffer.remaining() == 0) {
-                                wrote = true;
-                                iterator.remove();
-                                con.writeFinished(null);
-                            }
-                        }
-                    }
-                    if (!wrote && key.isReadable()) {
-                        hadStuff = true;
-                        try {
-                            if ( ! con.readData() ) {
-                                iterator.remove();
-                            }
-                        } catch (Exception ioe) {
-                            ioe.printStackTrace();
-                            con.closed(ioe);
-                            key.cancel();
-                            try {
-                                channel.close();
-                            } catch (IOException e) {
-                                Log.w(this.toString(), "", e);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (Throwable e) {
+            channel.finishConnect();
+            con = connectionFactory.apply(key,channel);
+            con.start();
+            result.complete();
+        } catch (Exception e) {
             Log.w(this.toString(), "", e);
-            new CompletableFuture<>(null, e); // FIXME: uh...
+            result.reject(e);
             try {
                 close();
             } catch (IOException e1) {
-                Log.w(this.toString(), "", e);
+                Log.w(this.toString(), "", e1);
             }
         }
-        if ( ! isClosed() ) {
-            if ( hadStuff ) {
-                Nucleus.current().execute(this);
-            } else {
-                Nucleus.current().delayed( 2, this );
-            }
-        } else
-            System.out.println("loop terminated");
     }
 
     public boolean isClosed() {
@@ -183,8 +128,10 @@ public class AsyncClientSocket implements Runnable {
 
         public void loop() {
             QueuingAsyncSocketConnection con = (QueuingAsyncSocketConnection) sock.getConnection();
-            con.write("Hello\n".getBytes());
-            con.tryFlush();
+            con.execute(() -> {
+                con.write("Hello\n".getBytes());
+                con.tryFlush();
+            });
             delayed(1000, () -> loop());
         }
     }
@@ -28,19 +28,17 @@ import com.avaidyam.binoculars.remoting.tcp.TCPServerConnector;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiFunction;
 
 /**
- * Implements NIO based TCP server.
+ * Implements NIO based TCP server. Connections are accepted by a thread of the
+ * SelectorPool, and serviced by the threads of the pool from then on.
  */
-public class AsyncServerSocket implements AutoCloseable {
+public class AsyncServerSocket implements AutoCloseable, SelectorPool.Handler {
 
 	/**
 	 *
@@ -50,7 +48,7 @@ public class AsyncServerSocket implements AutoCloseable {
 	/**
 	 *
 	 */
-    Selector selector;
+    SelectorPool.SelectorThread selectorThread;
 
 	/**
 	 *
@@ -65,138 +63,44 @@ public class AsyncServerSocket implements AutoCloseable {
 	/**
 	 *
 	 */
-	Thread localThread = null;
+	ConcurrentLinkedQueue<AsyncSocketConnection> connections = new ConcurrentLinkedQueue<>();
 
 	/**
+	 * Starts accepting connections. The factory is called for each accepted
+	 * channel on the accepting thread, and has to start() the connection it
+	 * creates once it is ready to receive data.
 	 *
 	 * @param port
 	 * @param connectionFactory
 	 * @throws IOException
 	 */
     public void connect(int port, BiFunction<SelectionKey, SocketChannel, AsyncSocketConnection> connectionFactory) throws IOException {
-        this.selector = Selector.open();
         this.socket = ServerSocketChannel.open();
         this.socket.configureBlocking(false);
+        AsyncSocketConnection.configure(this.socket);
 
         this.socket.socket().bind(new InetSocketAddress(port));
-        this.serverkey = this.socket.register(selector, SelectionKey.OP_ACCEPT);
         this.connectionFactory = connectionFactory;
-
-        receiveLoop();
+        this.selectorThread = SelectorPool.get().next();
+        this.selectorThread.register(socket, SelectionKey.OP_ACCEPT, this);
     }
 
-    public void receiveLoop() {
-
-		// Get the right thread installed.
-        if (this.localThread == null)
-			this.localThread = Thread.currentThread();
-        else if (this.localThread != Thread.currentThread())
-			throw new IllegalThreadStateException();
-
-        boolean hadStuff = false;
-        int iterCount = 10;
-        do {
-            try {
-                selector.selectNow();
-                Set<SelectionKey> selectionKeys = selector.selectedKeys();
-                for (Iterator<SelectionKey> iterator = selectionKeys.iterator(); iterator.hasNext(); ) {
-                    SelectionKey key = iterator.next();
-                    try {
-                        if (key == serverkey) {
-                            if (key.isAcceptable()) {
-                                SocketChannel accept = socket.accept();
-                                if (accept != null) {
-                                    hadStuff = true;
-                                    accept.configureBlocking(false);
-                                    SelectionKey newKey = accept.register(selector, SelectionKey.OP_READ|SelectionKey.OP_WRITE);
-                                    AsyncSocketConnection con = connectionFactory.apply(key, accept);
-                                    newKey.attach(con);
-                                }
-                            }
-                        } else {
-                            SocketChannel client = (SocketChannel) key.channel();
-                            int written = 0;
-                            if (key.isWritable()) {
-                                AsyncSocketConnection con = (AsyncSocketConnection) key.attachment();
-                                ByteBuffer writingBuffer = con.getWritingBuffer();
-                                if ( writingBuffer != null ) {
-                                    hadStuff = true;
-                                    try {
-                                        written = con.chan.write(writingBuffer);
-                                        if (written<0) {
-                                            iterator.remove();
-                                            key.cancel();
-                                            // closed
-                                            con.writeFinished(new IOException("disconnected"));
-                                        } else if ( writingBuffer.remaining() == 0) {
-                                            iterator.remove();
-                                            con.writeFinished(null);
-                                        }
-                                    } catch (IOException ioe) {
-                                        iterator.remove();
-                                        key.cancel();
-                                        con.writeFinished(new IOException("disconnected"));
-                                    }
-                                }
-                            }
-                            if (key.isReadable() && written == 0) {
-                                iterator.remove();
-                                AsyncSocketConnection con = (AsyncSocketConnection) key.attachment();
-                                if ( con == null || con.isClosed() ) {
-                                    Log.w(this.toString(), "con is null " + key);
-                                } else {
-                                    hadStuff = true;
-                                    try {
-                                        if ( ! con.readData() ) {
-                                            // yield ?
-                                        }
-                                    } catch (Exception e) {
-                                        con.closed(e);
-                                        key.cancel();
-                                        try {
-                                            client.close();
-                                        } catch (IOException ee) {
-                                            Log.w(this.toString(), "", ee);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    } catch (Throwable e) {
-                        Log.w(this.toString(), "", e);
-                    }
-                }
-            } catch (Throwable e) {
-                Log.w(this.toString(), "", e);
-	            //new CompletableFuture<>(null, e); // FIXME: uh...
-            }
-        } while (iterCount-- > 0 && hadStuff );
-
-        if (!isClosed()) {
-
-			//
-			Nucleus nucleus = Nucleus.current();
-            if (hadStuff)
-                nucleus.execute(this::receiveLoop);
-            else nucleus.delayed(1, this::receiveLoop);
-        } else {
-
-            // close open connections
-            try {
-                selector.selectNow();
-                Nucleus.submitDelayed(TCPServerConnector.DELAY_MS_TILL_CLOSE, () -> {
-	                selector.selectedKeys().forEach(key -> {
-		                try {
-			                key.channel().close();
-		                } catch(IOException e) {
-			                Log.w(this.toString(), "", e);
-		                }
-	                });
-                });
-            } catch (IOException e) {
-                Log.w(this.toString(), "", e);
+    @Override
+    public void selected(SelectionKey key) {
+        serverkey = key;
+        if ( !key.isAcceptable() )
+            return;
+        connections.removeIf(AsyncSocketConnection::isClosed);
+        try {
+            SocketChannel accept;
+            while ( (accept = socket.accept()) != null ) {
+                accept.configureBlocking(false);
+                AsyncSocketConnection con = connectionFactory.apply(key, accept);
+                if ( con != null )
+                    connections.add(con);
             }
-
+        } catch (IOException e) {
+            Log.w(this.toString(), "", e);
         }
     }
 
@@ -209,10 +113,25 @@ public class AsyncServerSocket implements AutoCloseable {
     }
 
 	/**
+	 * Stops accepting connections, and closes the open ones after
+	 * TCPServerConnector.DELAY_MS_TILL_CLOSE.
 	 *
 	 * @throws IOException
 	 */
     public void close() throws IOException {
         socket.close();
+        selectorThread.wakeup(); // have the key deregistered, releasing the port
+
+        // need to give time for flush. No way to determine wether buffers are out =>
+        // risk of premature close + message loss
+        Nucleus.submitDelayed(TCPServerConnector.DELAY_MS_TILL_CLOSE, () -> {
+            connections.forEach(con -> {
+                try {
+                    con.close();
+                } catch (IOException e) {
+                    Log.w(this.toString(), "", e);
+                }
+            });
+        });
     }
 }
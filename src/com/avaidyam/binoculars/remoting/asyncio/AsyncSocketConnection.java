@@ -22,37 +22,84 @@
 
 package com.avaidyam.binoculars.remoting.asyncio;
 
-import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.Log;
 import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Future;
 import org.nustaq.serialization.util.*;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.NetworkChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 
 /**
  * Baseclass for handling async io. Its strongly recommended to use QueuingAsyncSocketConnection as this
  * eases things.
+ *
+ * A connection is serviced by one of the threads of the SelectorPool, which is assigned on construction.
+ * Once started, all reads and writes happen on that thread; other threads have to use execute().
  */
-public abstract class AsyncSocketConnection {
+public abstract class AsyncSocketConnection implements SelectorPool.Handler {
+
+    public static int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Disables Nagle's algorithm, so small frames are sent right away. Batching is done
+     * by the connections themselves (see ObjectAsyncSourceConnection).
+     */
+    public static boolean TCP_NODELAY = true;
+
+    /**
+     * Socket send and receive buffer sizes in bytes, 0 leaves the OS defaults.
+     */
+    public static int SEND_BUFFER_SIZE = 0;
+    public static int RECEIVE_BUFFER_SIZE = 0;
+
+    // direct read buffers of failed connections, reused by new ones
+    static final ConcurrentLinkedQueue<ByteBuffer> readBufferPool = new ConcurrentLinkedQueue<>();
 
-    protected ByteBuffer readBuf = ByteBuffer.allocateDirect(4096);
+    protected ByteBuffer readBuf = acquireReadBuffer();
 
     protected SelectionKey key;
     protected SocketChannel chan;
+    protected SelectorPool.SelectorThread selectorThread;
 
     protected CompletableFuture writeCompletableFuture;
     protected ByteBuffer writingBuffer;
     protected boolean isClosed;
+    protected boolean readPaused;
     protected Executor myNucleus;
 
     public AsyncSocketConnection(SelectionKey key, SocketChannel chan) {
         this.key = key;
         this.chan = chan;
+        if ( chan != null )
+            configure(chan);
+        this.selectorThread = SelectorPool.get().next();
+        this.myNucleus = selectorThread;
+        this.theExecutingThread = selectorThread;
+    }
+
+    /**
+     * Applies TCP_NODELAY and the buffer sizes to a channel. Receive buffers larger than
+     * 64k have to be set on the server socket before it is bound.
+     */
+    public static void configure(NetworkChannel chan) {
+        try {
+            if ( chan instanceof SocketChannel )
+                chan.setOption(StandardSocketOptions.TCP_NODELAY, TCP_NODELAY);
+            if ( SEND_BUFFER_SIZE > 0 && chan instanceof SocketChannel )
+                chan.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+            if ( RECEIVE_BUFFER_SIZE > 0 )
+                chan.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+        } catch (IOException e) {
+            Log.w(chan.toString(), "", e);
+        }
     }
 
     public abstract void closed(Throwable ioe);
@@ -61,8 +108,98 @@ public abstract class AsyncSocketConnection {
 //        isClosed = true;
 //    }
 
+    /**
+     * Registers the (non blocking) channel with the selector thread of this connection,
+     * so data is read once it arrives.
+     */
+    public void start() {
+        selectorThread.execute(() -> {
+            try {
+                int ops = readOps() | (writingBuffer != null ? SelectionKey.OP_WRITE : 0);
+                key = chan.register(selectorThread.selector, ops, this);
+            } catch (IOException e) {
+                failed(e);
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the thread servicing this connection.
+     */
+    public void execute(Runnable task) {
+        selectorThread.execute(task);
+    }
+
     public void close() throws IOException {
         chan.close();
+        selectorThread.wakeup(); // have the key deregistered
+    }
+
+    /**
+     * Stops reading from the channel until resumeReading() is called, so the peer is
+     * held back by TCP flow control while the receiving side can not take more.
+     */
+    protected void pauseReading() {
+        checkThread();
+        readPaused = true;
+        if ( key != null && key.isValid() )
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    /**
+     * Reads from the channel again after pauseReading().
+     */
+    protected void resumeReading() {
+        checkThread();
+        readPaused = false;
+        if ( key != null && key.isValid() )
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+    }
+
+    private int readOps() {
+        return readPaused ? 0 : SelectionKey.OP_READ;
+    }
+
+    @Override
+    public void selected(SelectionKey key) {
+        if ( key.isWritable() && writingBuffer != null ) {
+            try {
+                if ( chan.write(writingBuffer) < 0 ) {
+                    failed(new IOException("disconnected"));
+                    return;
+                }
+                if ( writingBuffer.remaining() == 0 ) {
+                    key.interestOps(readOps());
+                    writeFinished(null);
+                }
+            } catch (IOException ioe) {
+                failed(ioe);
+                return;
+            }
+        }
+        if ( key.isValid() && key.isReadable() && ! readPaused ) {
+            try {
+                readData();
+            } catch (Exception e) {
+                failed(e);
+            }
+        }
+    }
+
+    // closes the connection after a read or write failed
+    protected void failed(Throwable error) {
+        if ( writeCompletableFuture != null )
+            writeFinished(error);
+        if ( ! isClosed )
+            closed(error);
+        releaseReadBuffer();
+        if ( key != null )
+            key.cancel();
+        try {
+            chan.close();
+        } catch (IOException e) {
+            Log.w(this.toString(), "", e);
+        }
     }
 
     /**
@@ -71,6 +208,8 @@ public abstract class AsyncSocketConnection {
      */
     public boolean readData() throws IOException {
         checkThread();
+        if ( readBuf == null )
+            throw new EOFException("connection closed");
         readBuf.position(0); readBuf.limit(readBuf.capacity());
         int read = chan.read(readBuf);
         if ( read == -1 )
@@ -81,6 +220,23 @@ public abstract class AsyncSocketConnection {
         return read == readBuf.capacity();
     }
 
+    static ByteBuffer acquireReadBuffer() {
+        ByteBuffer buf = readBufferPool.poll();
+        return buf != null && buf.capacity() == READ_BUFFER_SIZE ? buf : ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the read buffer to the pool. Must only be called by the thread
+     * reading the connection, after which no more data can be read.
+     */
+    public void releaseReadBuffer() {
+        ByteBuffer buf = readBuf;
+        if ( buf != null ) {
+            readBuf = null;
+            readBufferPool.offer(buf);
+        }
+    }
+
     protected void checkThread() {
         if ( theExecutingThread == null )
             theExecutingThread = Thread.currentThread();
@@ -104,8 +260,6 @@ public abstract class AsyncSocketConnection {
     protected Thread theExecutingThread; // originall for debugging, but now used to reschedule ..
     protected Future directWrite(ByteBuffer buf) {
         checkThread();
-        if ( myNucleus == null )
-            myNucleus = Nucleus.current();
         if ( writeCompletableFuture != null )
             throw new RuntimeException("concurrent write con:"+chan.isConnected()+" open:"+chan.isOpen());
         writeCompletableFuture = new CompletableFuture();
@@ -119,7 +273,9 @@ public abstract class AsyncSocketConnection {
                 writeFinished(new IOException("connection closed"));
             }
             if ( buf.remaining() > 0 ) {
-//                key.interestOps(SelectionKey.OP_WRITE);
+                // the rest is written by selected() once the channel is writable again
+                if ( key != null && key.isValid() )
+                    key.interestOps(readOps() | SelectionKey.OP_WRITE);
             } else {
                 writeFinished(null);
             }
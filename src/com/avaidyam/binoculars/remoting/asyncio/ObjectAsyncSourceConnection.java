@@ -22,25 +22,60 @@
 
 package com.avaidyam.binoculars.remoting.asyncio;
 
-import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.remoting.base.ObjectFlow;
+import com.avaidyam.binoculars.remoting.encoding.FrameCodec;
 import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.scheduler.ElasticScheduler;
 import org.nustaq.offheap.BinaryQueue;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.util.FSTUtil;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Sends and receives batches of objects as length prefixed frames (see FrameCodec).
+ * Received data is collected in the codec's read buffer and frames are decoded
+ * from there. A batch is written to the channel from the encoder's buffer by a
+ * gathering write, and only copied to the write queue if earlier data is still
+ * queued or the channel does not take all of it. Objects can be written and
+ * flushed from any thread; batches are encoded and written on the selector
+ * thread of the connection.
  *
+ * Batching adapts to the load: while the previous batch is still being written,
+ * a flush is deferred until the socket has taken it, so everything written in
+ * the meantime goes out as one batch. The number of objects after which a
+ * writer triggers a flush doubles whenever a batch could not be written right
+ * away, and halves whenever it could (between MIN_BATCH_SIZE and MAX_BATCH_SIZE).
+ * An idle connection so sends small batches immediately, a saturated one large
+ * batches.
  */
 public abstract class ObjectAsyncSourceConnection extends QueuingAsyncSocketConnection implements ObjectFlow.Source {
 
+    public static int MIN_BATCH_SIZE = 16;
+    public static int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * How long reading pauses when the receiving side holds back objects because a
+     * mailbox is full, before delivering them is tried again (see ObjectFlow.Sink.deliverHeld).
+     */
+    public static long RESUME_DELAY_MS = 1;
+
     FSTConfiguration conf;
+    FrameCodec codec = new FrameCodec(null);
     Throwable lastError;
-    ArrayList objects = new ArrayList();
+    final ConcurrentLinkedQueue<Object> objects = new ConcurrentLinkedQueue<>();
+    final AtomicInteger numObjects = new AtomicInteger(0);
+    final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    final ArrayList batch = new ArrayList();
+    volatile int batchSize = MIN_BATCH_SIZE;
+    boolean flushDeferred;
 
     public ObjectAsyncSourceConnection(SelectionKey key, SocketChannel chan) {
         super(key, chan);
@@ -51,40 +86,69 @@ public abstract class ObjectAsyncSourceConnection extends QueuingAsyncSocketConn
         setConf(conf);
     }
 
-    public void setConf(FSTConfiguration conf) {this.conf = conf;}
+    public void setConf(FSTConfiguration conf) {
+        this.conf = conf;
+        codec.setConf(conf);
+    }
 
     public FSTConfiguration getConf() {
         return conf;
     }
 
     @Override
-    public void dataReceived(BinaryQueue q) {
+    public void dataReceived(ByteBuffer buf) {
         checkThread();
-        while ( q.available() > 4 ) {
-            int len = q.readInt();
-            if ( len <= 0 )
-            {
-                System.out.println("object len ?? "+len);
-                return;
+        codec.receive(buf);
+        deliverFrames();
+    }
+
+    // decodes and delivers the received frames. The receiving side never blocks this
+    // (shared) thread on a full mailbox but holds objects back, so reading pauses until
+    // it has delivered them.
+    void deliverFrames() {
+        try {
+            boolean clear;
+            while ( (clear = deliverHeld()) && codec.hasFrame() ) {
+                receivedObject(codec.decode());
             }
-            if ( q.available() >= len ) {
-                byte[] bytes = q.readByteArray(len);
-                receivedObject(conf.asObject(bytes));
-            } else {
-                q.back(4);
-                break;
+            if ( ! clear ) {
+                if ( ! readPaused )
+                    pauseReading();
+                ElasticScheduler.delayedCalls.schedule(RESUME_DELAY_MS, () -> execute(() -> {
+                    if ( ! isClosed() )
+                        deliverFrames();
+                }));
+            } else if ( readPaused ) {
+                resumeReading();
             }
+        } catch (Exception e) {
+            FSTUtil.<RuntimeException>rethrow(e);
         }
     }
 
+    // only used if data has been put into the read queue
+    @Override
+    public void dataReceived(BinaryQueue q) {
+        int len = (int) q.available();
+        if ( len > 0 )
+            dataReceived(ByteBuffer.wrap(q.readByteArray(len)));
+    }
+
     public abstract void receivedObject(Object o);
 
+    /**
+     * Delivers objects held back by the receiving side, see ObjectFlow.Sink.deliverHeld.
+     *
+     * @return true if nothing is held back anymore
+     */
+    protected boolean deliverHeld() {
+        return true;
+    }
+
+    // may be called from any thread, objects are encoded on the thread of this connection
     public void writeObject(Object o) {
-        if ( myNucleus != null )
-            myNucleus = Nucleus.current();
-        checkThread();
         objects.add(o);
-        if (objects.size()>100) {
+        if (numObjects.incrementAndGet()>batchSize) {
             try {
                 flush();
             } catch (Exception e) {
@@ -96,29 +160,68 @@ public abstract class ObjectAsyncSourceConnection extends QueuingAsyncSocketConn
     @Override
     public void flush() throws Exception {
         if ( theExecutingThread != Thread.currentThread() ) {
-            if ( myNucleus == null )
-                return;
-            myNucleus.execute( () -> {
-                try {
-                    flush();
-                } catch (Exception e) {
-                    Log.w(this.toString(), "", e);
-                }
-            });
+            if ( flushScheduled.compareAndSet(false, true) ) {
+                myNucleus.execute( () -> {
+                    flushScheduled.set(false);
+                    try {
+                        flush();
+                    } catch (Exception e) {
+                        Log.w(this.toString(), "", e);
+                    }
+                });
+            }
             return;
         }
         checkThread();
-        if ( objects.size() == 0 ) {
+        if ( ! canWrite() || writeQueue.available() > 0 ) {
+            flushDeferred = true; // see writeQueueDrained
             return;
         }
-        objects.add(0); // sequence
-        Object[] objArr = objects.toArray();
-        objects.clear();
-
-        byte[] bytes = conf.asByteArray(objArr);
-        write(bytes.length);
-        write(bytes);
-        tryFlush();
+        Object o;
+        while ( (o = objects.poll()) != null ) {
+            batch.add(o);
+        }
+        if ( batch.size() == 0 ) {
+            return;
+        }
+        numObjects.addAndGet(-batch.size());
+        batch.add(0); // sequence
+        Object[] objArr = batch.toArray();
+        batch.clear();
+
+        ByteBuffer[] frame = codec.encodeFrame(objArr);
+        try {
+            chan.write(frame);
+        } catch (IOException e) {
+            // close the connection like after a failed write in selected(); the caller
+            // of a flush run as a task or once the write queue drained never sees e
+            setLastError(e);
+            failed(e);
+            throw e;
+        }
+        // queue what could not be written right away
+        boolean queued = false;
+        for (ByteBuffer buf : frame) {
+            if ( buf.hasRemaining() ) {
+                write(buf.array(), buf.position(), buf.remaining());
+                queued = true;
+            }
+        }
+        batchSize = queued ? Math.min(MAX_BATCH_SIZE, batchSize * 2) : Math.max(MIN_BATCH_SIZE, batchSize / 2);
+        if ( queued )
+            tryFlush();
+    }
+
+    @Override
+    protected void writeQueueDrained() {
+        if ( flushDeferred ) {
+            flushDeferred = false;
+            try {
+                flush();
+            } catch (Exception e) {
+                Log.w(this.toString(), "", e);
+            }
+        }
     }
 
     public Throwable getLastError() {
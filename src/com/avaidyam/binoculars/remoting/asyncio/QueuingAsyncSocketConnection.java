@@ -115,10 +115,18 @@ public abstract class QueuingAsyncSocketConnection extends AsyncSocketConnection
                         tryFlush();
                     }
                 });
+            } else {
+                writeQueueDrained();
             }
         }
     }
 
+    /**
+     * Called once everything written has been handed to the socket.
+     */
+    protected void writeQueueDrained() {
+    }
+
     @Override
     public void dataReceived(ByteBuffer buf) {
         wrapper.setBuffer(buf);
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.asyncio;
+
+import com.avaidyam.binoculars.Log;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of selector threads servicing the sockets of all server and
+ * client connections of the process, instead of a thread per connection.
+ *
+ * Each channel is registered with one of the threads and handled only by that
+ * thread from then on: the Handler attached to its key is called whenever the
+ * channel is ready. Any other work on a channel has to be passed to its thread
+ * with execute().
+ */
+public class SelectorPool {
+
+	/**
+	 * The number of selector threads of the shared pool.
+	 */
+	public static int NUM_SELECTORS = Runtime.getRuntime().availableProcessors();
+
+	private static volatile SelectorPool shared;
+
+	/**
+	 * @return the pool shared by all connectors, started on first use
+	 */
+	public static SelectorPool get() {
+		SelectorPool pool = shared;
+		if ( pool == null ) {
+			synchronized (SelectorPool.class) {
+				if ( shared == null )
+					shared = new SelectorPool(NUM_SELECTORS);
+				pool = shared;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Attached to a registered key, called by its selector thread.
+	 */
+	public interface Handler {
+		void selected(SelectionKey key);
+	}
+
+	final SelectorThread threads[];
+	final AtomicInteger next = new AtomicInteger(0);
+
+	public SelectorPool(int numThreads) {
+		threads = new SelectorThread[Math.max(1, numThreads)];
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i] = new SelectorThread("binoculars-selector-" + i);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * @return the thread to handle the next channel, assigned round robin
+	 */
+	public SelectorThread next() {
+		return threads[(next.getAndIncrement() & Integer.MAX_VALUE) % threads.length];
+	}
+
+	public int size() {
+		return threads.length;
+	}
+
+	public static class SelectorThread extends Thread implements Executor {
+
+		final Selector selector;
+		final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+		SelectorThread(String name) throws IOException {
+			super(name);
+			setDaemon(true);
+			selector = Selector.open();
+		}
+
+		/**
+		 * Runs a task on this thread.
+		 */
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+			wakeup(); // also from this thread, so the next select does not block
+		}
+
+		public void wakeup() {
+			if ( wakeupPending.compareAndSet(false, true) )
+				selector.wakeup();
+		}
+
+		/**
+		 * Registers a channel with this thread, the handler is attached to its key.
+		 */
+		public void register(SelectableChannel channel, int ops, Handler handler) {
+			execute(() -> {
+				try {
+					channel.register(selector, ops, handler);
+				} catch (IOException e) {
+					Log.w(this.toString(), "", e);
+				}
+			});
+		}
+
+		@Override
+		public void run() {
+			while ( selector.isOpen() ) {
+				try {
+					selector.select();
+					wakeupPending.set(false);
+					Runnable task;
+					while ( (task = tasks.poll()) != null ) {
+						try {
+							task.run();
+						} catch (Throwable e) {
+							Log.w(this.toString(), "", e);
+						}
+					}
+					for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext(); ) {
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						try {
+							if ( key.isValid() )
+								((Handler) key.attachment()).selected(key);
+						} catch (Throwable e) {
+							Log.w(this.toString(), "", e);
+						}
+					}
+				} catch (Throwable e) {
+					Log.w(this.toString(), "", e);
+				}
+			}
+		}
+	}
+}
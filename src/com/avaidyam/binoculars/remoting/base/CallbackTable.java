@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.base;
+
+import com.avaidyam.binoculars.future.Signal;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Holds the callbacks (and Future results) published to a remote end until their
+ * result arrives. Callbacks are kept in a slot array indexed by their id, so
+ * registering, looking up and removing one is O(1) and does not box or hash.
+ *
+ * An id combines the slot index with the generation of the slot, which is bumped
+ * each time the slot is freed. A late or duplicated answer carrying the id of a
+ * callback which was already removed so does not reach whichever callback reuses
+ * the slot afterwards.
+ *
+ * Ids are always > 0, as a future key of 0 means there is no result to send.
+ *
+ * A callback may be given a deadline (in System.nanoTime()), after which reap()
+ * removes it, so callbacks whose answer never arrives do not pile up. Callbacks which
+ * receive the result of a call (as opposed to callbacks passed as arguments) are
+ * counted as requests, so the number of calls in flight can be limited.
+ */
+public class CallbackTable {
+
+	/**
+	 * The number of id bits holding the slot index, the remaining ones (except for
+	 * the sign) hold the generation.
+	 */
+	static final int INDEX_BITS = 20;
+	static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+	static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+	/**
+	 * The maximum number of callbacks registered at once.
+	 */
+	public static final int MAX_SIZE = INDEX_MASK;
+
+	private Signal[] slots;
+	private int[] generations;
+	private long[] deadlines; // 0 == none
+	private boolean[] requests;
+	private int[] free; // stack of free slot indices
+	private int freeCount;
+	private int used; // slots [1, used) have been handed out at least once
+	private int size;
+	private int requestCount;
+
+	public CallbackTable() {
+		this(64);
+	}
+
+	public CallbackTable(int initialCapacity) {
+		int capacity = Math.max(2, initialCapacity);
+		slots = new Signal[capacity];
+		generations = new int[capacity];
+		deadlines = new long[capacity];
+		requests = new boolean[capacity];
+		free = new int[capacity];
+		used = 1; // slot 0 is never used, so that no id is 0
+	}
+
+	/**
+	 * Registers a callback and returns its id.
+	 *
+	 * @param cb the callback
+	 * @return the id of the callback, > 0
+	 * @throws IllegalStateException if MAX_SIZE callbacks are registered already
+	 */
+	public int add(Signal cb) {
+		return add(cb, 0, false);
+	}
+
+	/**
+	 * Registers a callback with a deadline and returns its id.
+	 *
+	 * @param cb the callback
+	 * @param deadline the System.nanoTime() after which reap() removes it, 0 for none
+	 * @param request whether the callback receives the result of a call
+	 * @return the id of the callback, > 0
+	 * @throws IllegalStateException if MAX_SIZE callbacks are registered already
+	 */
+	public synchronized int add(Signal cb, long deadline, boolean request) {
+		int index;
+		if ( freeCount > 0 ) {
+			index = free[--freeCount];
+		} else {
+			if ( used == slots.length )
+				grow();
+			index = used++;
+		}
+		slots[index] = cb;
+		deadlines[index] = deadline;
+		requests[index] = request;
+		if ( request )
+			requestCount++;
+		size++;
+		return (generations[index] << INDEX_BITS) | index;
+	}
+
+	/**
+	 * Returns the callback registered with the given id, or null if there is none
+	 * (anymore).
+	 *
+	 * @param id the id of the callback
+	 * @return the callback or null
+	 */
+	public synchronized Signal get(int id) {
+		int index = id & INDEX_MASK;
+		if ( index == 0 || index >= used || generations[index] != (id >>> INDEX_BITS) )
+			return null;
+		return slots[index];
+	}
+
+	/**
+	 * Removes the callback registered with the given id, if it is still registered.
+	 *
+	 * @param id the id of the callback
+	 * @return the removed callback or null
+	 */
+	public synchronized Signal remove(int id) {
+		int index = id & INDEX_MASK;
+		if ( index == 0 || index >= used || generations[index] != (id >>> INDEX_BITS) || slots[index] == null )
+			return null;
+		return free(index);
+	}
+
+	/**
+	 * Moves the deadline of the callback registered with the given id, if it is still
+	 * registered and has a deadline. Used when a part of a streamed answer arrives.
+	 *
+	 * @param id the id of the callback
+	 * @param deadline the new deadline
+	 */
+	public synchronized void touch(int id, long deadline) {
+		int index = id & INDEX_MASK;
+		if ( index == 0 || index >= used || generations[index] != (id >>> INDEX_BITS) || deadlines[index] == 0 )
+			return;
+		deadlines[index] = deadline;
+	}
+
+	/**
+	 * Removes the callbacks whose deadline has passed.
+	 *
+	 * @param now the current System.nanoTime()
+	 * @param expired receives the removed callbacks
+	 * @return the number of removed callbacks
+	 */
+	public synchronized int reap(long now, Collection<Signal> expired) {
+		int count = 0;
+		for ( int i = 1; i < used; i++ ) {
+			if ( slots[i] != null && deadlines[i] != 0 && deadlines[i] - now <= 0 ) {
+				expired.add(free(i));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all callbacks.
+	 *
+	 * @param removed receives the removed callbacks (may be null)
+	 */
+	public synchronized void clear(Collection<Signal> removed) {
+		for ( int i = 1; i < used; i++ ) {
+			if ( slots[i] != null ) {
+				Signal cb = free(i);
+				if ( removed != null )
+					removed.add(cb);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of registered callbacks.
+	 *
+	 * @return the number of registered callbacks
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of registered callbacks which receive the result of a call.
+	 *
+	 * @return the number of calls in flight
+	 */
+	public synchronized int requests() {
+		return requestCount;
+	}
+
+	private Signal free(int index) {
+		Signal cb = slots[index];
+		slots[index] = null;
+		deadlines[index] = 0;
+		if ( requests[index] ) {
+			requests[index] = false;
+			requestCount--;
+		}
+		generations[index] = (generations[index] + 1) & GENERATION_MASK;
+		free[freeCount++] = index;
+		size--;
+		return cb;
+	}
+
+	private void grow() {
+		if ( slots.length > MAX_SIZE )
+			throw new IllegalStateException("more than " + MAX_SIZE + " callbacks registered");
+		int capacity = Math.min(slots.length * 2, MAX_SIZE + 1);
+		slots = Arrays.copyOf(slots, capacity);
+		generations = Arrays.copyOf(generations, capacity);
+		deadlines = Arrays.copyOf(deadlines, capacity);
+		requests = Arrays.copyOf(requests, capacity);
+		free = Arrays.copyOf(free, capacity);
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.base;
+
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.future.SignalWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Transfers a byte stream (e.g. the contents of a file) between nuclei in chunks, instead of
+ * as a single argument or result, so neither side has to hold all of it and other calls on
+ * the same connection are not held up behind it.
+ *
+ * The receiving side creates a Receiver and passes it as the Signal argument of a call to
+ * the sending side, which hands it to send() along with the stream to read:
+ *
+ *   // sender
+ *   public void download(String name, Signal<ChunkedStream.Chunk> receiver) {
+ *       ChunkedStream.send(new FileInputStream(name), receiver);
+ *   }
+ *   // receiver
+ *   ChunkedStream.Receiver r = ChunkedStream.receiveTo(new FileOutputStream(copy));
+ *   remote.download(name, r);
+ *   r.future().then(...)
+ *
+ * Chunks are streamed to the receiver (Signal.CONT), the last one completes it. Flow control
+ * is credit based: the sender may have at most WINDOW chunks unacknowledged, and the receiver
+ * returns credits through a Signal carried by the first chunk once it has processed chunks.
+ * A receiver which does not keep up so stops the sender rather than piling up chunks in
+ * between. The sender reads the stream on its nucleus thread, one chunk at a time.
+ */
+public class ChunkedStream {
+
+	public static int CHUNK_SIZE = 64 * 1024;
+	public static int WINDOW = 8;
+
+	/**
+	 * A chunk of a stream. The first chunk carries the Signal to return credits to.
+	 */
+	public static class Chunk implements Serializable {
+		byte[] data;
+		Signal<Integer> credits;
+
+		public Chunk() {}
+
+		public Chunk(byte[] data, Signal<Integer> credits) {
+			this.data = data;
+			this.credits = credits;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+	}
+
+	/**
+	 * Sends the contents of a stream to a receiver, and closes the stream when done. Must be
+	 * called on a nucleus thread, which is the one reading the stream.
+	 *
+	 * @return a future completed with the number of bytes sent once the stream has been read
+	 */
+	public static Future<Long> send(InputStream in, Signal<Chunk> receiver) {
+		Sender sender = new Sender(in, receiver, Nucleus.current());
+		sender.pump();
+		return sender.result;
+	}
+
+	/**
+	 * @return a receiver writing the chunks to a stream, which is closed when done
+	 */
+	public static Receiver receiveTo(OutputStream out) {
+		return new Receiver(data -> {
+			try {
+				out.write(data);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}, () -> {
+			try {
+				out.close();
+			} catch (IOException e) {
+				Log.w(ChunkedStream.class.getSimpleName(), "", e);
+			}
+		});
+	}
+
+	static class Sender {
+		final InputStream in;
+		final Signal<Chunk> receiver;
+		final CompletableFuture<Long> result = new CompletableFuture<>();
+		final Signal<Integer> credits;
+		int available = WINDOW;
+		long sent;
+		boolean first = true;
+
+		Sender(InputStream in, Signal<Chunk> receiver, Nucleus nucleus) {
+			this.in = in;
+			this.receiver = receiver;
+			this.credits = new SignalWrapper<>(nucleus, (Signal<Integer>) (granted, error) -> {
+				if ( result.isComplete() )
+					return;
+				if ( Signal.isCont(error) ) {
+					available += granted;
+					pump();
+				} else
+					abort(new IOException("receiver stopped"));
+			});
+		}
+
+		// sends chunks as long as there are credits, runs on the sending nucleus
+		void pump() {
+			try {
+				while ( available > 0 ) {
+					byte[] data = read();
+					boolean last = data.length < CHUNK_SIZE;
+					Chunk chunk = new Chunk(data, first ? credits : null);
+					first = false;
+					available--;
+					sent += data.length;
+					if ( last ) {
+						in.close();
+						receiver.complete(chunk, null);
+						result.complete(sent);
+						return;
+					}
+					receiver.stream(chunk);
+				}
+			} catch (IOException e) {
+				receiver.reject(e);
+				abort(e);
+			}
+		}
+
+		void abort(Throwable error) {
+			try {
+				in.close();
+			} catch (IOException ignored) {}
+			result.completeExceptionally(error);
+		}
+
+		// reads a full chunk, or what is left before the end of the stream
+		byte[] read() throws IOException {
+			byte[] buf = new byte[CHUNK_SIZE];
+			int len = 0;
+			while ( len < buf.length ) {
+				int read = in.read(buf, len, buf.length - len);
+				if ( read < 0 )
+					break;
+				len += read;
+			}
+			return len < buf.length ? Arrays.copyOf(buf, len) : buf;
+		}
+	}
+
+	/**
+	 * Receives a stream chunk by chunk, runs on the nucleus it was passed from.
+	 */
+	public static class Receiver implements Signal<Chunk> {
+		final Consumer<byte[]> onData;
+		final Runnable onEnd;
+		final CompletableFuture<Long> result = new CompletableFuture<>();
+		Signal<Integer> credits;
+		int unacknowledged;
+		long received;
+
+		/**
+		 * @param onData called for each chunk's data, in order
+		 * @param onEnd called when the stream ended or failed, may be null
+		 */
+		public Receiver(Consumer<byte[]> onData, Runnable onEnd) {
+			this.onData = onData;
+			this.onEnd = onEnd;
+		}
+
+		/**
+		 * @return a future completed with the number of bytes received at the end of the stream
+		 */
+		public Future<Long> future() {
+			return result;
+		}
+
+		@Override
+		public void complete(Chunk chunk, Throwable error) {
+			if ( result.isComplete() )
+				return;
+			if ( Signal.isError(error) ) {
+				end();
+				result.completeExceptionally(error);
+				return;
+			}
+			if ( chunk.credits != null )
+				credits = chunk.credits;
+			try {
+				onData.accept(chunk.data);
+			} catch (Exception e) {
+				end();
+				result.completeExceptionally(e);
+				return;
+			}
+			received += chunk.data.length;
+			if ( Signal.isCont(error) ) {
+				// return credits in batches of half the window
+				if ( ++unacknowledged >= Math.max(1, WINDOW / 2) ) {
+					credits.stream(unacknowledged);
+					unacknowledged = 0;
+				}
+			} else {
+				end();
+				result.complete(received);
+			}
+		}
+
+		void end() {
+			if ( credits != null )
+				credits.complete(0, null); // releases the sender's credit signal
+			if ( onEnd != null )
+				onEnd.run();
+		}
+	}
+}
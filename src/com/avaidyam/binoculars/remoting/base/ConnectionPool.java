@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.base;
+
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.future.SignalWrapper;
+import com.avaidyam.binoculars.remoting.base.ConnectibleNucleus.NucleusClientConnector;
+import com.avaidyam.binoculars.remoting.encoding.Codec;
+import com.avaidyam.binoculars.remoting.encoding.Coding;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Shares client connections among callers. The first caller for a key (see key, i.e.
+ * "host:port" with the facade class and the Coding) connects, later and concurrent callers get the same facade reference, so all of them are
+ * multiplexed over one socket and one RemoteRegistry instead of each opening their own.
+ * Calls made through the facade are queued in its mailbox and sent in order, so the
+ * ordering of each caller's calls is preserved. The connection itself is serviced by the
+ * nucleus it was connected from; callers inside a nucleus get their results and disconnect
+ * notifications on their own nucleus.
+ *
+ * An entry is dropped once its connection is closed or fails to connect, and the next
+ * caller for its key connects again. The disconnect Signals and handlers of all callers
+ * sharing a connection are notified when it is closed.
+ */
+public class ConnectionPool {
+
+	/**
+	 * A pooled connection and the callers to notify when it is closed.
+	 */
+	static class Entry {
+		final CompletableFuture<Nucleus> facade = new CompletableFuture<>();
+		final List<Signal<NucleusClientConnector>> disconnectSignals = new CopyOnWriteArrayList<>();
+		final List<Consumer<Nucleus>> disconnectHandlers = new CopyOnWriteArrayList<>();
+		boolean closed;
+
+		/**
+		 * Adds a caller to notify on disconnect, unless the connection is closed already.
+		 *
+		 * @return false if the connection is closed and the caller has to connect again
+		 */
+		synchronized boolean join(Signal<NucleusClientConnector> disconnectSignal, Consumer<Nucleus> disconnectHandler) {
+			if (closed)
+				return false;
+			if (disconnectSignal != null)
+				disconnectSignals.add(disconnectSignal);
+			if (disconnectHandler != null)
+				disconnectHandlers.add(disconnectHandler);
+			return true;
+		}
+
+		/**
+		 * Marks the connection closed, after which no callers are added anymore.
+		 */
+		synchronized void close() {
+			closed = true;
+		}
+	}
+
+	/**
+	 * The pool shared by all connectibles which enable pooling.
+	 */
+	private static final ConnectionPool shared = new ConnectionPool();
+
+	/**
+	 * Returns the pool shared by all connectibles which enable pooling.
+	 *
+	 * @return the shared pool
+	 */
+	public static ConnectionPool get() {
+		return shared;
+	}
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the key of the connections to the given address, for the given facade class
+	 * and Coding. Connections are only shared by callers agreeing on all of them.
+	 *
+	 * @param address the remote end, i.e. "host:port"
+	 * @param nucleusClass the class of the facade
+	 * @param coding the Coding used
+	 * @return the key to pass to connect and close
+	 */
+	public static String key(String address, Class<?> nucleusClass, Coding coding) {
+		StringBuilder key = new StringBuilder(address).append('/').append(nucleusClass.getName())
+				.append('/').append(coding.getCoding());
+		for (Map.Entry<Class, Codec> codec : coding.getCodecs().entrySet())
+			key.append(',').append(codec.getKey().getName()).append('=').append(codec.getValue().getClass().getName());
+		if (coding.getCrossPlatformShortClazzNames() != null)
+			for (Class clazz : coding.getCrossPlatformShortClazzNames())
+				key.append(';').append(clazz.getName());
+		return key.toString();
+	}
+
+	/**
+	 * Returns the facade connected for the given key, connecting the connectible if there
+	 * is none yet.
+	 *
+	 * @param key identifies the remote end, see key
+	 * @param connectible connects the remote end if it is not pooled yet
+	 * @param disconnectSignal called on disconnect (may be null)
+	 * @param disconnectHandler called on disconnect, with the RemoteNucleus (may be null)
+	 * @return a Future containing the shared Nucleus reference
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Nucleus> Future<T> connect(String key, ConnectibleNucleus<T> connectible,
+	                                            Signal<NucleusClientConnector> disconnectSignal,
+	                                            Consumer<T> disconnectHandler) {
+		final Nucleus caller = Nucleus.inside() ? Nucleus.current() : null;
+		Signal<NucleusClientConnector> signal = disconnectSignal;
+		if (signal != null && caller != null)
+			signal = new SignalWrapper<>(caller, disconnectSignal);
+		Consumer<Nucleus> handler = (Consumer<Nucleus>) disconnectHandler;
+		if (handler != null && caller != null) {
+			Consumer<Nucleus> callersHandler = handler;
+			handler = n -> caller.execute(() -> callersHandler.accept(n));
+		}
+
+		// an entry found here may be closed before joining it, then it is gone from the map
+		Entry created, entry;
+		do {
+			created = new Entry();
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null)
+				entry = created;
+		} while (!entry.join(signal, handler));
+
+		if (entry == created) {
+			final Entry e = created;
+			connectible.connect(
+					(connector, error) -> {
+						entries.remove(key, e);
+						e.close();
+						e.disconnectSignals.forEach(s -> s.complete(connector, error));
+					},
+					nucleus -> {
+						entries.remove(key, e);
+						e.close();
+						e.disconnectHandlers.forEach(h -> h.accept(nucleus));
+					}
+			).then((facade, error) -> {
+				if (error != null) {
+					entries.remove(key, e);
+					e.facade.reject(error);
+				} else e.facade.resolve(facade);
+			});
+		}
+		if (caller == null)
+			return (Future<T>) entry.facade;
+		CompletableFuture<T> result = new CompletableFuture<>();
+		entry.facade.then(new SignalWrapper<>(caller, (Signal) result));
+		return result;
+	}
+
+	/**
+	 * Closes the pooled connection for the given key, if any. Callers still holding its
+	 * facade are notified through their disconnect Signals.
+	 *
+	 * @param key identifies the remote end, see key
+	 */
+	public void close(String key) {
+		Entry entry = entries.remove(key);
+		if (entry == null)
+			return;
+		entry.facade.then((facade, error) -> {
+			if (facade != null && facade.getNucleusRef().__clientConnection instanceof RemoteRegistry) {
+				try {
+					((RemoteRegistry) facade.getNucleusRef().__clientConnection).getWriteObjectSocket().get().close();
+				} catch (Exception e) {
+					Log.w(this.toString(), "", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Closes all pooled connections.
+	 */
+	public void closeAll() {
+		entries.keySet().forEach(this::close);
+	}
+
+	/**
+	 * Returns the number of pooled connections.
+	 *
+	 * @return the number of pooled connections
+	 */
+	public int size() {
+		return entries.size();
+	}
+}
@@ -138,6 +138,15 @@ public class NucleusClient<T extends Nucleus> {
 						}
 					}
 
+					@Override public boolean deliverHeld() {
+						try {
+							return reg.deliverHeld();
+						} catch(Exception e) {
+							FSTUtil.rethrow(e);
+							return true;
+						}
+					}
+
 					@Override public void sinkClosed() {
 						reg.setTerminated(true);
 						reg.cleanUp();
@@ -109,6 +109,16 @@ public class NucleusServer {
 					}
 				}
 				
+				@Override
+				public boolean deliverHeld() {
+					try {
+						return reg.deliverHeld();
+					} catch (Exception e) {
+						e.printStackTrace();
+						return true;
+					}
+				}
+				
 				@Override
 				public void sinkClosed() {
 					reg.setTerminated(true);
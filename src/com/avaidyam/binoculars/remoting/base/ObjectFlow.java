@@ -118,6 +118,17 @@ public interface ObjectFlow {
 			receiveObject(this,received,createdFutures);
 		}
 
+		/**
+		 * Delivers objects held back because a mailbox they are addressed to was full.
+		 * receiveObject never blocks on a full mailbox, so readers sharing a thread
+		 * between connections stop reading while this returns false and retry later.
+		 *
+		 * @return true if nothing is held back anymore
+		 */
+		default boolean deliverHeld() {
+			return true;
+		}
+
 		/**
 		 *
 		 */
@@ -29,11 +29,17 @@ import com.avaidyam.binoculars.future.Future;
 import com.avaidyam.binoculars.Log;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * polls queues of remote nuclei proxies and serializes messages to their associated object sockets.
  *
+ * The loop is event driven: a registry signals (see RemoteRegistry.signalSend) once a message is
+ * queued for one of its remote nuclei, a callback result is written or it terminates. Only signalled
+ * registries are polled, and the loop is idle while there is nothing to send. Only while a socket
+ * does not accept writes, the loop retries after a millisecond.
+ *
  * Note for transparent websocket/longpoll reconnect:
  * Terminated / Disconnected remote actors (registries) are removed from the entry list,
  * so regular nuclei messages sent to a terminated remote nuclei queue up in its inbox.
@@ -54,6 +60,12 @@ public class RemotePolling implements Runnable {
 	
 	ArrayList<ScheduleEntry> sendJobs = new ArrayList<>();
 	
+	// the nucleus running this loop, and wether a run has been requested
+	Nucleus owner;
+	final AtomicBoolean scheduled = new AtomicBoolean(false);
+	boolean retryScheduled = false;
+	boolean rerun = false;
+	
 	AtomicInteger instanceCount = new AtomicInteger(0);
 	public RemotePolling() {
 		instanceCount.incrementAndGet();
@@ -71,45 +83,39 @@ public class RemotePolling implements Runnable {
 		CompletableFuture promise = new CompletableFuture();
 		sendJobs.add(new ScheduleEntry(reg, promise));
 		synchronized (this) {
-			if ( ! loopStarted ) {
-				loopStarted = true;
-				Nucleus.current().execute(this);
-			}
+			if ( owner == null )
+				owner = Nucleus.current();
 		}
+		reg.setSendLoop(this);
+		reg.signalSend(); // send what has been queued so far
 		return promise;
 	}
 	
-	boolean loopStarted = false;
+	/**
+	 * Requests a run of the loop on its nucleus. Can be called from any thread.
+	 */
+	public void signal() {
+		if ( scheduled.compareAndSet(false, true) )
+			owner.execute(this);
+	}
+	
 	boolean underway = false;
 	static AtomicInteger scansPersec = new AtomicInteger(0);
 	Thread pollThread;
 	
-	int remoteRefCounter = 0; // counts active remote refs, if none backoff remoteref polling massively
 	public void run() {
 		pollThread = Thread.currentThread();
-		if ( underway )
+		if ( underway ) {
+			rerun = true;
 			return;
+		}
 		underway = true;
 		try {
 			int count = 1;
-			while( count > 0 ) {
+			while( count > 0 || rerun ) {
+				rerun = false;
+				scheduled.set(false); // signals from now on request another run
 				count = onePoll();
-				if ( sendJobs.size() > 0 ) {
-					if ( count > 0 ) {
-//                        Nucleus.current().yield();
-					}
-					else {
-						if ( remoteRefCounter == 0 ) // no remote actors registered
-						{
-							Nucleus.current().delayed(100, this); // backoff massively
-						} else {
-							Nucleus.current().delayed(1, this); // backoff a bit (remoteactors present, no messages)
-						}
-					}
-				} else {
-					// no schedule entries (== no clients)
-					Nucleus.current().delayed(100, this );
-				}
 			}
 		} finally {
 			underway = false;
@@ -117,40 +123,45 @@ public class RemotePolling implements Runnable {
 	}
 	
 	protected int onePoll() {
-		int count = 1;
-		int maxit = 1;
-		remoteRefCounter = 0;
-		//while ( maxit > 0 && count > 0)
-		{
-			count = 0;
-			scansPersec.incrementAndGet();
-			for (int i = 0; i < sendJobs.size(); i++) {
-				ScheduleEntry entry = sendJobs.get(i);
-				if ( entry.reg.getRemoteNucleusSize() > 0 ) {
-					remoteRefCounter++;
-				}
-				if ( entry.reg.isTerminated() ) {
-					terminateEntry(i, entry, "terminated", null );
-					i--;
-					continue;
-				}
-				try {
-					if (entry.reg.pollAndSend2Remote(entry.reg.getWriteObjectSocket())) {
-						count++;
-					}
-				} catch (Throwable e) {
-					Log.d(this.toString(), e.toString());
-					terminateEntry(i, entry, null, e);
-					i--;
+		int count = 0;
+		int blocked = 0;
+		scansPersec.incrementAndGet();
+		for (int i = 0; i < sendJobs.size(); i++) {
+			ScheduleEntry entry = sendJobs.get(i);
+			if ( entry.reg.isTerminated() ) {
+				terminateEntry(i, entry, "terminated", null );
+				i--;
+				continue;
+			}
+			if ( ! entry.reg.clearSendPending() )
+				continue;
+			try {
+				ObjectFlow.Source chan = entry.reg.getWriteObjectSocket().get();
+				if ( chan != null && ! chan.canWrite() ) {
+					entry.reg.markSendPending();
+					blocked++;
+				} else if (entry.reg.pollAndSend2Remote(entry.reg.getWriteObjectSocket())) {
+					entry.reg.markSendPending(); // there may be more than one batch
+					count++;
 				}
+			} catch (Throwable e) {
+				Log.d(this.toString(), e.toString());
+				terminateEntry(i, entry, null, e);
+				i--;
 			}
-			maxit--;
 		}
-		
+		if ( blocked > 0 && count == 0 && ! retryScheduled ) {
+			retryScheduled = true;
+			Nucleus.current().delayed(1, () -> {
+				retryScheduled = false;
+				run();
+			});
+		}
 		return count;
 	}
 	
 	protected void terminateEntry(int i, ScheduleEntry entry, Object res, Throwable e) {
+		entry.reg.setSendLoop(null);
 		entry.reg.stopRemoteRefs();
 		sendJobs.remove(i);
 		entry.promise.complete(res,e);
@@ -23,12 +23,13 @@
 package com.avaidyam.binoculars.remoting.base;
 
 import com.avaidyam.binoculars.Exceptions;
-import com.avaidyam.binoculars.Export;
+import com.avaidyam.binoculars.Lane;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.remoting.RemoteInvocation;
 import com.avaidyam.binoculars.remoting.RemoteConnection;
 import com.avaidyam.binoculars.future.*;
 import com.avaidyam.binoculars.remoting.encoding.*;
+import com.avaidyam.binoculars.scheduler.ElasticScheduler;
 import com.avaidyam.binoculars.scheduler.RemoteScheduler;
 import com.avaidyam.binoculars.Log;
 import org.nustaq.serialization.FSTConfiguration;
@@ -36,12 +37,17 @@ import org.nustaq.serialization.util.FSTUtil;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -55,7 +61,37 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	
 	public static final Object OUT_OF_ORDER_SEQ = "OOOS";
 	public static int MAX_BATCH_CALLS = 500;
+	
+	/**
+	 * The default time in milliseconds a published callback waits for its answer before it
+	 * is failed with a Timeout and removed. Streamed answers (Signal.CONT) restart the wait.
+	 * 0 disables the timeout, as remote calls may legitimately run for a long time; the
+	 * callbacks of a connection are failed once it is closed either way.
+	 */
+	public static long CALLBACK_TIMEOUT = 0;
+	
+	/**
+	 * The interval in milliseconds at which expired callbacks are looked for.
+	 */
+	public static long CALLBACK_SWEEP_INTERVAL = 1000;
+	
+	/**
+	 * The default number of calls with a Future result which may be in flight on a connection,
+	 * 0 for no limit. Once reached, further calls with a Future result (and the calls queued
+	 * behind them) stay queued in the mailbox of the remote reference (and so block senders
+	 * once it is full) until answers arrive, other calls are still sent. Answers complete
+	 * their Future as they arrive, in whatever order the remote end produces them.
+	 */
+	public static int MAX_IN_FLIGHT = 0;
+	
 	private NucleusServer server;
+
+	// default interceptor, rejects calls to methods excluded from transport
+	public static final BiFunction<Nucleus,String,Boolean> TRANSPORT_INTERCEPTOR =
+			(a,methodName) -> {
+				Method method = a.__getCachedMethod(methodName, a);
+				return method != null && MethodTable.isTransported(method);
+			};
 	
 	public static void registerDefaultClassMappings(FSTConfiguration conf) {
 		conf.registerCrossPlatformClassMapping(new String[][]{
@@ -66,23 +102,27 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	
 	protected FSTConfiguration conf;
 	protected RemoteScheduler scheduler = new RemoteScheduler(); // unstarted thread dummy
-	// holds published actors, futures and callbacks of this process
+	// holds published actors of this process
 	protected AtomicInteger nucleiIdCount = new AtomicInteger(0);
 	protected ConcurrentHashMap<Integer, Object> publishedNucleusMapping = new ConcurrentHashMap<>();
 	protected ConcurrentHashMap<Object, Integer> publishedNucleusMappingReverse = new ConcurrentHashMap<>();
+	// holds published futures and callbacks of this process until answered
+	protected CallbackTable publishedCallbacks = new CallbackTable();
+	protected volatile long callbackTimeout = CALLBACK_TIMEOUT;
+	protected volatile int maxInFlight = MAX_IN_FLIGHT;
+	protected final AtomicBoolean sweepScheduled = new AtomicBoolean(false);
+	protected final AtomicLong expiredCallbacks = new AtomicLong(0);
+	protected final AtomicLong abandonedCallbacks = new AtomicLong(0);
 	// have disabled dispacther thread
 	protected ConcurrentLinkedQueue<Nucleus> remoteNuclei = new ConcurrentLinkedQueue<>();
 	protected ConcurrentHashMap<Integer,Nucleus> remoteNucleusSet = new ConcurrentHashMap<>();
 	protected volatile boolean terminated = false;
-	protected BiFunction<Nucleus,String,Boolean> remoteCallInterceptor =
-			(a,methodName) -> {
-				Method method = a.__getCachedMethod(methodName, a);
-				Export e = method.getAnnotation(Export.class);
-				if ( method == null || (e != null && !e.transport()) ) {
-					return false;
-				}
-				return true;
-			};
+	protected volatile RemotePolling sendLoop;
+	protected final AtomicBoolean sendPending = new AtomicBoolean(false);
+	protected MethodTable methodTable = new MethodTable();
+	// received entries waiting for room in the queue they go to, only touched by the thread reading the connection
+	protected final ArrayDeque<RemoteCallEntry> held = new ArrayDeque<>();
+	protected BiFunction<Nucleus,String,Boolean> remoteCallInterceptor = TRANSPORT_INTERCEPTOR;
 	protected Consumer<Nucleus> disconnectHandler;
 	protected boolean isObsolete;
 	private Nucleus facadeNucleus;
@@ -114,6 +154,9 @@ public abstract class RemoteRegistry implements RemoteConnection {
 		conf.registerSerializer(Spore.class, new SporeSerializer(), true);
 		conf.registerClass(RemoteCallEntry.class);
 		conf.registerSerializer(CompletableFuture.Timeout.class, new TimeoutSerializer(), false);
+		conf.registerSerializer(Signal.Continue.class, new ContinueSerializer(), false);
+		if ( code != null )
+			code.getCodecs().forEach((clazz, codec) -> conf.registerSerializer(clazz, new CodecSerializer(codec), false));
 	}
 	
 	public Nucleus getPublishedNucleus(int id) {
@@ -121,7 +164,7 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	}
 	
 	public Signal getPublishedCallback(int id) {
-		return (Signal) publishedNucleusMapping.get(id);
+		return publishedCallbacks.get(id);
 	}
 	
 	public RemoteScheduler getScheduler() {
@@ -138,6 +181,35 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	
 	public void setTerminated(boolean terminated) {
 		this.terminated = terminated;
+		if ( terminated )
+			signalSend(); // have the send loop drop this registry
+	}
+	
+	public void setSendLoop(RemotePolling sendLoop) {
+		this.sendLoop = sendLoop;
+	}
+	
+	/**
+	 * Signals that there is something to send (or that this registry terminated). Called
+	 * by the scheduler of remote nuclei once a message is queued, can be called from any
+	 * thread. Only the first signal after the send loop polled this registry wakes it up.
+	 */
+	public void signalSend() {
+		if ( sendPending.compareAndSet(false, true) ) {
+			RemotePolling loop = sendLoop;
+			if ( loop != null )
+				loop.signal();
+		}
+	}
+	
+	// used by the send loop: true if signalled since the last poll
+	boolean clearSendPending() {
+		return sendPending.getAndSet(false);
+	}
+	
+	// used by the send loop to poll again without a signal
+	void markSendPending() {
+		sendPending.set(true);
 	}
 	
 	public int publishNucleus(Nucleus act) {
@@ -175,13 +247,91 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	}
 	
 	public int registerPublishedCallback(Signal cb) {
-		Integer integer = publishedNucleusMappingReverse.get(cb);
-		if ( integer == null ) {
-			integer = nucleiIdCount.incrementAndGet();
-			publishedNucleusMapping.put(integer, cb);
-			publishedNucleusMappingReverse.put(cb, integer);
+		return registerPublishedCallback(cb, false);
+	}
+	
+	/**
+	 * @param cb the callback to publish
+	 * @param request whether the callback receives the result of a call sent over this
+	 *                connection, which counts towards the in flight limit
+	 * @return the id of the callback
+	 */
+	protected int registerPublishedCallback(Signal cb, boolean request) {
+		long timeout = callbackTimeout;
+		if ( timeout <= 0 )
+			return publishedCallbacks.add(cb, 0, request);
+		int id = publishedCallbacks.add(cb, deadline(timeout), request);
+		scheduleSweep();
+		return id;
+	}
+	
+	/**
+	 * @return true if no more calls with a Future result may be sent until answers arrive
+	 */
+	public boolean isWindowFull() {
+		int max = maxInFlight;
+		return max > 0 && publishedCallbacks.requests() >= max;
+	}
+	
+	private static long deadline(long timeout) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		return deadline == 0 ? 1 : deadline; // 0 means no deadline
+	}
+	
+	private void scheduleSweep() {
+		if ( sweepScheduled.compareAndSet(false, true) )
+			ElasticScheduler.delayedCalls.schedule(CALLBACK_SWEEP_INTERVAL, this::sweepCallbacks);
+	}
+	
+	/**
+	 * Fails and removes the published callbacks whose answer is overdue. Runs on the timer
+	 * thread while there are callbacks left.
+	 */
+	protected void sweepCallbacks() {
+		List<Signal> expired = new ArrayList<>();
+		publishedCallbacks.reap(System.nanoTime(), expired);
+		if ( !expired.isEmpty() ) {
+			expiredCallbacks.addAndGet(expired.size());
+			Log.w(this.toString(), expired.size() + " remote callbacks timed out");
+			expired.forEach(this::failCallback);
+			if ( maxInFlight > 0 )
+				signalSend(); // may have made room for held calls
 		}
-		return integer;
+		sweepScheduled.set(false);
+		if ( !terminated && publishedCallbacks.size() > 0 )
+			scheduleSweep();
+	}
+	
+	private void failCallback(Signal cb) {
+		try {
+			cb.complete(null, CompletableFuture.Timeout.INSTANCE);
+		} catch (Exception e) {
+			Log.w(this.toString(), "", e);
+		}
+	}
+	
+	public void removePublishedCallback(int receiverKey) {
+		publishedCallbacks.remove(receiverKey);
+	}
+	
+	/**
+	 * Fails and removes a published callback whose call could not be sent, freeing its
+	 * slot in the window. May be called from any thread.
+	 *
+	 * @param receiverKey the id of the callback
+	 * @param cause the reason the call could not be sent
+	 */
+	public void failPublishedCallback(int receiverKey, Throwable cause) {
+		Signal cb = publishedCallbacks.remove(receiverKey);
+		if ( cb == null )
+			return;
+		try {
+			cb.complete(null, cause);
+		} catch (Exception e) {
+			Log.w(this.toString(), "", e);
+		}
+		if ( maxInFlight > 0 )
+			signalSend(); // may have made room for held calls
 	}
 	
 	public void removePublishedObject(int receiverKey) {
@@ -280,7 +430,7 @@ public abstract class RemoteRegistry implements RemoteConnection {
 					if ( resp != null && ! "SP".equals(resp) ) // FIXME: hack for short polling
 						Log.e(this.toString(), "unexpected response:" + resp); // fixme
 					hadResp = true;
-				} else if (processRemoteCallEntry(responseChannel, (RemoteCallEntry) resp, createdFutures))
+				} else if (deliver(responseChannel, (RemoteCallEntry) resp, createdFutures))
 					hadResp = true;
 			}
 			return hadResp;
@@ -290,18 +440,84 @@ public abstract class RemoteRegistry implements RemoteConnection {
 					Log.e(this.toString(), "unexpected response:" + response); // fixme
 				return true;
 			}
-			if (processRemoteCallEntry(responseChannel, (RemoteCallEntry) response, createdFutures)) return true;
+			if (deliver(responseChannel, (RemoteCallEntry) response, createdFutures)) return true;
 		}
 		return false;
 	}
 	
+	// processes an entry, unless it has to wait behind held ones or its queue is full
+	private boolean deliver(ObjectFlow.Source responseChannel, RemoteCallEntry entry, List<Future> createdFutures) throws Exception {
+		if ( !held.isEmpty() || isBlocked(entry) ) {
+			held.add(entry);
+			return false;
+		}
+		return processRemoteCallEntry(responseChannel, entry, createdFutures);
+	}
+	
+	/**
+	 * Delivers the entries receiveObject held back because the queue they go to was
+	 * full, in the order received. Called by the thread reading the connection, which
+	 * stops reading while entries are held (see ObjectFlow.Sink.deliverHeld).
+	 *
+	 * @return true if no entries are held anymore
+	 */
+	public boolean deliverHeld() throws Exception {
+		RemoteCallEntry entry;
+		while ( (entry = held.peek()) != null ) {
+			if ( isBlocked(entry) )
+				return false;
+			held.poll();
+			processRemoteCallEntry(getWriteObjectSocket().get(), entry, null);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return whether processing an entry now would block the reading thread, because
+	 * the queue it goes to is full (see Channel.isFull). Another sender filling the
+	 * queue in between can still make it wait, but only until that queue drains.
+	 */
+	protected boolean isBlocked(RemoteCallEntry read) {
+		if ( read.getQueue() == read.MAILBOX ) {
+			Nucleus targetNucleus = getPublishedNucleus(read.getReceiverKey());
+			if ( targetNucleus == null || targetNucleus.isStopped() || targetNucleus.__scheduler == null )
+				return false;
+			Method method = resolveMethod(targetNucleus, read);
+			return method != null && targetNucleus.__channel.isFull(Lane.of(method));
+		}
+		Signal publishedSignal = getPublishedCallback(read.getReceiverKey());
+		if ( publishedSignal instanceof SignalWrapper ) {
+			Nucleus targetNucleus = ((SignalWrapper) publishedSignal).getTargetNucleus();
+			return targetNucleus != null && targetNucleus.__channel.isFull(Lane.HIGH);
+		}
+		return false;
+	}
+	
+	// resolves the method of an incoming call, null if there is none or the interceptor blocks it
+	protected Method resolveMethod(Nucleus targetNucleus, RemoteCallEntry read) {
+		Nucleus nucleus = targetNucleus.getNucleus();
+		Method method;
+		if (read.getMethodId() == MethodTable.NONE) {
+			if (remoteCallInterceptor != null && !remoteCallInterceptor.apply(targetNucleus, read.getMethod()))
+				return null;
+			return nucleus.__getCachedMethod(read.getMethod(), nucleus);
+		}
+		// the table only resolves transportable methods, so the default interceptor can be skipped
+		if (read.getMethod() != null)
+			method = methodTable.define(read.getMethodId(), read.getMethod(), nucleus.getClass());
+		else
+			method = methodTable.lookup(read.getMethodId(), nucleus.getClass());
+		if (method == null || (remoteCallInterceptor != TRANSPORT_INTERCEPTOR && remoteCallInterceptor != null &&
+				!remoteCallInterceptor.apply(targetNucleus, method.getName())))
+			return null;
+		return method;
+	}
+
 	// dispatch incoming remotecalls
 	protected boolean processRemoteCallEntry(ObjectFlow.Source objSocket, RemoteCallEntry response, List<Future> createdFutures
 	) throws Exception {
 		RemoteCallEntry read = response;
-		boolean isContinue = read.getArgs().length > 1 && Signal.CONT.equals(read.getArgs()[1]);
-		if ( isContinue )
-			read.getArgs()[1] = Signal.CONT; // enable ==
+		boolean isContinue = read.getArgs().length > 1 && Signal.isCont(read.getArgs()[1]);
 		if (read.getQueue() == read.MAILBOX) {
 			Nucleus targetNucleus = getPublishedNucleus(read.getReceiverKey());
 			if (targetNucleus ==null) {
@@ -313,13 +529,14 @@ public abstract class RemoteRegistry implements RemoteConnection {
 				receiveCBResult(objSocket, read.getFutureKey(), null, Exceptions.InternalNucleusStoppedException.INSTANCE);
 				return true;
 			}
-			if (remoteCallInterceptor != null && !remoteCallInterceptor.apply(targetNucleus,read.getMethod())) {
+			Method method = resolveMethod(targetNucleus, read);
+			if (method == null) {
 				Log.w(this.toString(), "remote message blocked by securityinterceptor " + targetNucleus.getClass().getName() +
-						" " + read.getMethod());
+						" " + read.getMethod() + " (" + read.getMethodId() + ")");
 				return false;
 			}
 			try {
-				Object future = targetNucleus.__scheduler.enqueueCall(this, null, targetNucleus, read.getMethod(), read.getArgs(), false);
+				Object future = targetNucleus.__scheduler.enqueueCall(this, null, targetNucleus, method, read.getArgs(), false);
 				if ( future instanceof Future) {
 					CompletableFuture p = null;
 					if ( createdFutures != null ) {
@@ -344,6 +561,10 @@ public abstract class RemoteRegistry implements RemoteConnection {
 				Log.w(this.toString(), "", th);
 				if ( read.getFutureKey() > 0 ) {
 					receiveCBResult(objSocket, read.getFutureKey(), null, FSTUtil.toString(th));
+				} else if ( th instanceof Exceptions.MailboxOverflowException ) {
+					// a one-way call rejected by a full mailbox has no one to report to, so it is
+					// dropped instead of failing the connection reader
+					Log.w(this.toString(), "dropped one-way call " + read.getMethod() + " to full mailbox of " + targetNucleus.getClass().getName());
 				} else {
 					FSTUtil.<RuntimeException>rethrow(th);
 				}
@@ -360,8 +581,12 @@ public abstract class RemoteRegistry implements RemoteConnection {
 							"Publisher already deregistered, set error to 'Nucleus.CONT' in order to signal more messages will be sent");
 			} else {
 				publishedSignal.complete(read.getArgs()[0], (Throwable)read.getArgs()[1]); // is a wrapper enqueuing in caller
-				if (!isContinue)
-					removePublishedObject(read.getReceiverKey());
+				if (!isContinue) {
+					removePublishedCallback(read.getReceiverKey());
+					if ( maxInFlight > 0 )
+						signalSend(); // may have made room for held calls
+				} else if ( callbackTimeout > 0 )
+					publishedCallbacks.touch(read.getReceiverKey(), deadline(callbackTimeout));
 			}
 		}
 		return createdFutures != null && createdFutures.size() > 0;
@@ -372,7 +597,19 @@ public abstract class RemoteRegistry implements RemoteConnection {
 	 */
 	public void cleanUp() {
 		conf.clearCaches();
+		held.clear();
 		stopRemoteRefs();
+		// no answers will arrive anymore, so fail what is still waiting for one
+		List<Signal> abandoned = new ArrayList<>();
+		publishedCallbacks.clear(abandoned);
+		abandonedCallbacks.addAndGet(abandoned.size());
+		abandoned.forEach(cb -> {
+			try {
+				cb.complete(null, Exceptions.InternalNucleusStoppedException.INSTANCE);
+			} catch (Exception e) {
+				Log.w(this.toString(), "", e);
+			}
+		});
 		publishedNucleusMappingReverse.keySet().forEach((act) -> {
 			if (act instanceof Nucleus)
 				unpublishNucleus((Nucleus) act);
@@ -422,6 +659,7 @@ public abstract class RemoteRegistry implements RemoteConnection {
 		RemoteCallEntry rce = new RemoteCallEntry(0, id, null, new Object[] {result,error});
 		rce.setQueue(rce.CBQ);
 		writeObject(chan, rce);
+		signalSend(); // flushed by the send loop
 	}
 	
 	public void close() {
@@ -447,6 +685,63 @@ public abstract class RemoteRegistry implements RemoteConnection {
 		return disconnectHandler;
 	}
 	
+	/**
+	 * Sets the time in milliseconds published callbacks of this connection wait for their
+	 * answer, 0 for no limit. Applies to callbacks published afterwards.
+	 *
+	 * @param callbackTimeout the timeout in milliseconds
+	 */
+	public void setCallbackTimeout(long callbackTimeout) {
+		this.callbackTimeout = callbackTimeout;
+	}
+	
+	public long getCallbackTimeout() {
+		return callbackTimeout;
+	}
+	
+	/**
+	 * Sets the number of calls with a Future result which may be in flight on this
+	 * connection, 0 for no limit.
+	 *
+	 * @param maxInFlight the in flight limit
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+		signalSend();
+	}
+	
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+	
+	/**
+	 * @return the number of calls with a Future result waiting for their answer
+	 */
+	public int getInFlight() {
+		return publishedCallbacks.requests();
+	}
+	
+	/**
+	 * @return the number of published callbacks waiting for an answer
+	 */
+	public int getPendingCallbacks() {
+		return publishedCallbacks.size();
+	}
+	
+	/**
+	 * @return the number of published callbacks failed because their answer was overdue
+	 */
+	public long getExpiredCallbacks() {
+		return expiredCallbacks.get();
+	}
+	
+	/**
+	 * @return the number of published callbacks failed because the connection closed
+	 */
+	public long getAbandonedCallbacks() {
+		return abandonedCallbacks.get();
+	}
+	
 	public void setClassLoader(ClassLoader l) {
 		conf.setClassLoader(l);
 	}
@@ -473,29 +768,53 @@ public abstract class RemoteRegistry implements RemoteConnection {
 			for (Iterator<Nucleus> iterator = remoteNuclei.iterator(); iterator.hasNext(); ) {
 				Nucleus remoteNucleus = iterator.next();
 				boolean cb = false; // true; FIXME
-				RemoteInvocation ce = (RemoteInvocation) remoteNucleus.__channel.outbox.poll();
+				RemoteInvocation ce = (RemoteInvocation) remoteNucleus.__channel.control.poll();
+				boolean windowFull = ce == null && isWindowFull();
+				if ( ce == null )
+					ce = pollLane(remoteNucleus.__channel.outbox, windowFull);
 				if ( ce == null ) {
 					cb = false;
-					ce = (RemoteInvocation) remoteNucleus.__channel.inbox.poll();
+					ce = pollLane(remoteNucleus.__channel.inbox, windowFull);
 				}
+				if ( ce == null )
+					ce = pollLane(remoteNucleus.__channel.bulk, windowFull);
 				if ( ce != null) {
 					if ( ce.getMethod().getName().equals("close") ) {
 						closeRef(ce,chan);
 					} else
 					if ( ce.getMethod().getName().equals("asyncstop") ) {
 						Log.e(this.toString(), "cannot stop remote actors");
+					} else
+					if ( !MethodTable.isTransported(ce.getMethod()) ) {
+						// i.e. the init() queued when the remote ref was created; the other side would reject it
+						if ( ce.hasFutureResult() )
+							ce.getFutureCB().complete(null, new RuntimeException("method not transported: " + ce.getMethod().getName()));
 					} else {
 						int futId = 0;
 						if (ce.hasFutureResult()) {
-							futId = registerPublishedCallback(ce.getFutureCB());
+							futId = registerPublishedCallback(ce.getFutureCB(), true);
 						}
 						try {
-							RemoteCallEntry rce = new RemoteCallEntry(futId, remoteNucleus.__remoteId, ce.getMethod().getName(), ce.getArgs());
+							int methodId = MethodTable.idOf(ce.getMethod());
+							RemoteCallEntry rce;
+							String signature = null;
+							if ( methodId > MethodTable.MAX_ID ) {
+								rce = new RemoteCallEntry(futId, remoteNucleus.__remoteId, ce.getMethod().getName(), ce.getArgs());
+							} else {
+								signature = methodTable.define(methodId) ? MethodTable.signatureOf(ce.getMethod()) : null;
+								rce = new RemoteCallEntry(futId, remoteNucleus.__remoteId, methodId, signature, ce.getArgs());
+							}
 							rce.setQueue(cb ? rce.CBQ : rce.MAILBOX);
+							if ( signature != null )
+								rce.setDefinedIn(methodTable); // withdrawn if it fails to encode
+							if ( futId != 0 )
+								rce.setSentBy(this); // fails the Future if it fails to encode
 							writeObject(chan, rce);
 							sumQueued++;
 							hadAnyMsg = true;
 						} catch (Exception ex) {
+							if ( futId != 0 )
+								failPublishedCallback(futId, ex); // frees its slot in the window
 							chan.setLastError(ex);
 							if (toRemove == null)
 								toRemove = new ArrayList();
@@ -516,6 +835,26 @@ public abstract class RemoteRegistry implements RemoteConnection {
 		return hadAnyMsg;
 	}
 	
+	/**
+	 * Polls the next call of a lane of a remote Nucleus. While the window is full, a call
+	 * with a Future result at the head of the lane is held (and with it the calls behind
+	 * it, to keep their order) until answers arrive; other calls still pass.
+	 *
+	 * @param lane the lane, may be null
+	 * @param windowFull whether no more calls with a Future result may be sent
+	 * @return the call to send or null
+	 */
+	private static RemoteInvocation pollLane(Queue lane, boolean windowFull) {
+		if ( lane == null )
+			return null;
+		if ( windowFull ) {
+			RemoteInvocation head = (RemoteInvocation) lane.peek();
+			if ( head == null || head.hasFutureResult() )
+				return null;
+		}
+		return (RemoteInvocation) lane.poll();
+	}
+	
 	public abstract AtomicReference<ObjectFlow.Source> getWriteObjectSocket();
 	
 	public boolean isObsolete() {
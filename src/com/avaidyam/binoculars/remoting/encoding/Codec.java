@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.encoding;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Encodes values of one type in a fixed layout, for types whose generic
+ * serialization (class tags and reference tracking for every contained object)
+ * is too costly. A codec is registered with a {@link Coding} for a class and
+ * used in place of the serializer's own handling of that class; both ends of a
+ * connection have to register the same codecs.
+ *
+ * Nested values a codec does not encode itself can be written and read with
+ * writeObject/readObject. Strings written with writeUTF are not limited in
+ * length by the FST streams the codec is used with (see CodecSerializer).
+ *
+ * @param <T> the type encoded
+ */
+public interface Codec<T> {
+
+	/**
+	 * Writes a value, which is never null.
+	 */
+	void encode(T value, ObjectOutput out) throws IOException;
+
+	/**
+	 * Reads a value written by encode.
+	 */
+	T decode(ObjectInput in) throws IOException, ClassNotFoundException;
+}
@@ -25,23 +25,50 @@ package com.avaidyam.binoculars.remoting.encoding;
 import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
 import org.nustaq.serialization.FSTConfiguration;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Used by the {@link RemoteRegistry} to wrap the task of configuring
  * and coding different remote references automatically.
+ *
+ * Besides the serializer type, a Coding holds the {@link Codec}s to use
+ * for specific classes (see register). The Compact type registers the
+ * StringMapCodec for HashMap.
  */
 public class Coding {
 	SerializerType coding;
 	Class crossPlatformShortClazzNames[];
+	final Map<Class, Codec> codecs = new LinkedHashMap<>();
 
 	public Coding(SerializerType coding) {
 		this.coding = coding;
+		if ( coding == SerializerType.Compact )
+			register(HashMap.class, new StringMapCodec());
 	}
 
 	public Coding(SerializerType coding, Class[] crossPlatformShortClazzNames) {
-		this.coding = coding;
+		this(coding);
 		this.crossPlatformShortClazzNames = crossPlatformShortClazzNames;
 	}
 
+	/**
+	 * Encodes instances of exactly the given class (not of subclasses) with a codec.
+	 * Has to be done before the Coding is used by a server or client.
+	 *
+	 * @return this
+	 */
+	public <T> Coding register(Class<T> clazz, Codec<? super T> codec) {
+		codecs.put(clazz, codec);
+		return this;
+	}
+
+	public Map<Class, Codec> getCodecs() {
+		return Collections.unmodifiableMap(codecs);
+	}
+
 	public Class[] getCrossPlatformShortClazzNames() {
 		return crossPlatformShortClazzNames;
 	}
@@ -69,6 +96,7 @@ public class Coding {
 				conf = FSTConfiguration.createFastBinaryConfiguration();
 				break;
 			case FSTSer:
+			case Compact:
 				conf = FSTConfiguration.createDefaultConfiguration();
 				break;
 			default:
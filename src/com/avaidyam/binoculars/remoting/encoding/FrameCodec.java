@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.encoding;
+
+import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Length prefixed framing of serialized objects. The wire format is the one
+ * of FSTConfiguration.encodeToStream/decodeFromStream: a 4 byte little endian
+ * length followed by the serialized object.
+ *
+ * Nothing is allocated per frame. An object is serialized into the reusable
+ * buffer of the encoder, from where it can be written together with its header
+ * by a gathering write (see encodeFrame), or appended to a reusable write buffer
+ * collecting several frames for a single write (see encode). Incoming bytes are
+ * collected in a reusable read buffer and each complete frame is decoded from
+ * there by the reusable decoder.
+ *
+ * Serialized references are positions relative to the start of an object's
+ * encoding, so an object can not be encoded into or decoded from the middle of
+ * a buffer directly; each frame is copied once between the codec's buffers and
+ * the encoder's or decoder's.
+ *
+ * Not thread safe: the write side and the read side each have to be used by
+ * one thread at a time.
+ */
+public class FrameCodec {
+
+	public static int INITIAL_BUFFER_SIZE = 64 * 1024;
+	public static int MIN_READ_SIZE = 4096;
+
+	FSTObjectOutput out;
+	FSTObjectInput in;
+
+	final ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+	ByteBuffer payload = ByteBuffer.allocate(0);
+	final ByteBuffer frame[] = { header, payload };
+
+	byte[] writeBuf = new byte[INITIAL_BUFFER_SIZE];
+	int writeLen;
+
+	byte[] readBuf = new byte[INITIAL_BUFFER_SIZE];
+	int readPos, readLimit;
+
+	// the decoder's input, owned by this codec (FST would otherwise hand the
+	// decoder a buffer cached per thread, shared with any other decoder created
+	// on the same thread)
+	byte[] frameBuf = new byte[INITIAL_BUFFER_SIZE];
+
+	public FrameCodec(FSTConfiguration conf) {
+		setConf(conf);
+	}
+
+	public void setConf(FSTConfiguration conf) {
+		if ( conf == null ) {
+			out = null;
+			in = null;
+		} else {
+			out = new FSTObjectOutput(conf);
+			in = new FSTObjectInput(conf);
+		}
+	}
+
+	/**
+	 * Serializes an object as a single frame.
+	 *
+	 * @return the header and the payload of the frame, to be written by a gathering
+	 * write. Both remain valid until the next encode.
+	 */
+	public ByteBuffer[] encodeFrame(Object toWrite) throws IOException {
+		out.resetForReUse();
+		try {
+			out.writeObject(toWrite);
+		} catch (IOException | RuntimeException e) {
+			failed(toWrite, e);
+			throw e;
+		}
+		int len = out.getWritten();
+		if ( payload.array() != out.getBuffer() ) // the encoder may have grown its buffer
+			frame[1] = payload = ByteBuffer.wrap(out.getBuffer());
+		payload.limit(len).position(0);
+		header.putInt(0, len).rewind();
+		return frame;
+	}
+
+	// the frame is lost, so method ids it would have defined have to be sent again (see MethodTable),
+	// and no answer will arrive for the calls in it. Encoding may happen long after the calls
+	// were handed to the connection (i.e. on its selector thread), so the failure is passed
+	// back to the sending side this way rather than to the caller.
+	private static void failed(Object toWrite, Throwable cause) {
+		if ( toWrite instanceof RemoteCallEntry ) {
+			((RemoteCallEntry) toWrite).failed(cause);
+		} else if ( toWrite instanceof Object[] ) {
+			for (Object o : (Object[]) toWrite)
+				if ( o instanceof RemoteCallEntry )
+					((RemoteCallEntry) o).failed(cause);
+		}
+	}
+
+	/**
+	 * Serializes an object as a frame appended to the write buffer.
+	 */
+	public void encode(Object toWrite) throws IOException {
+		encodeFrame(toWrite);
+		int len = payload.remaining();
+		if ( writeBuf.length - writeLen < len + 4 )
+			writeBuf = Arrays.copyOf(writeBuf, Math.max(writeLen + len + 4, writeBuf.length * 2));
+		putInt(writeBuf, writeLen, len);
+		System.arraycopy(payload.array(), 0, writeBuf, writeLen + 4, len);
+		writeLen += len + 4;
+	}
+
+	/**
+	 * @return the buffer holding the encoded frames, valid until the next encode
+	 */
+	public byte[] getWriteBuffer() {
+		return writeBuf;
+	}
+
+	/**
+	 * @return the number of encoded bytes in the write buffer
+	 */
+	public int getWriteLength() {
+		return writeLen;
+	}
+
+	/**
+	 * Marks the encoded frames as sent.
+	 */
+	public void clearWrite() {
+		writeLen = 0;
+	}
+
+	/**
+	 * Writes out the encoded frames and clears the write buffer.
+	 */
+	public void writeTo(OutputStream stream) throws IOException {
+		if ( writeLen > 0 ) {
+			stream.write(writeBuf, 0, writeLen);
+			writeLen = 0;
+		}
+	}
+
+	/**
+	 * Appends the remaining bytes of buf to the read buffer.
+	 */
+	public void receive(ByteBuffer buf) {
+		int len = buf.remaining();
+		ensureReadable(len);
+		buf.get(readBuf, readLimit, len);
+		readLimit += len;
+	}
+
+	/**
+	 * Appends the bytes of a single read from the stream to the read buffer.
+	 *
+	 * @return the number of bytes read, -1 at the end of the stream
+	 */
+	public int receive(InputStream stream) throws IOException {
+		ensureReadable(MIN_READ_SIZE);
+		int read = stream.read(readBuf, readLimit, readBuf.length - readLimit);
+		if ( read > 0 )
+			readLimit += read;
+		return read;
+	}
+
+	/**
+	 * @return true if a complete frame has been received
+	 */
+	public boolean hasFrame() {
+		int avail = readLimit - readPos;
+		return avail >= 4 && avail - 4 >= getInt(readBuf, readPos);
+	}
+
+	/**
+	 * Decodes the next frame, which must be complete (see hasFrame).
+	 */
+	public Object decode() throws Exception {
+		int len = getInt(readBuf, readPos);
+		if ( len <= 0 )
+			throw new IOException("invalid frame length " + len);
+		int start = readPos + 4;
+		readPos = start + len;
+		if ( readPos == readLimit )
+			readPos = readLimit = 0; // the next receive starts over at the front
+		if ( frameBuf.length < len )
+			frameBuf = new byte[Math.max(len, frameBuf.length * 2)];
+		System.arraycopy(readBuf, start, frameBuf, 0, len);
+		in.resetForReuseUseArray(frameBuf, len);
+		return in.readObject();
+	}
+
+	// makes room for at least n more bytes, and the whole of a partially received frame
+	void ensureReadable(int n) {
+		if ( readBuf.length - readLimit >= n )
+			return;
+		int pending = readLimit - readPos;
+		int needed = pending + n;
+		if ( pending >= 4 )
+			needed = Math.max(needed, 4 + getInt(readBuf, readPos));
+		byte[] target = needed > readBuf.length ? new byte[Math.max(needed, readBuf.length * 2)] : readBuf;
+		System.arraycopy(readBuf, readPos, target, 0, pending);
+		readBuf = target;
+		readPos = 0;
+		readLimit = pending;
+	}
+
+	static void putInt(byte[] buf, int pos, int val) {
+		buf[pos] = (byte) val;
+		buf[pos + 1] = (byte) (val >>> 8);
+		buf[pos + 2] = (byte) (val >>> 16);
+		buf[pos + 3] = (byte) (val >>> 24);
+	}
+
+	static int getInt(byte[] buf, int pos) {
+		return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8 | (buf[pos + 2] & 0xff) << 16 | (buf[pos + 3] & 0xff) << 24;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.encoding;
+
+import com.avaidyam.binoculars.Export;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps remotely called methods to compact integer ids, so a RemoteCallEntry
+ * does not have to carry (and the receiver does not have to look up) the
+ * method name on every call.
+ *
+ * Ids are assigned process-wide by the sending side. A table is held per
+ * connection: the first call using an id on that connection also carries the
+ * overload-safe signature of the method (see signatureOf), which the receiving
+ * side resolves once against the target class and remembers; all later calls
+ * carry the id alone and are resolved by indexing an array. Since a connection
+ * delivers entries in order, the definition always arrives before its uses.
+ * If the entry carrying a definition can not be encoded, the id is forgotten
+ * (see RemoteCallEntry.failed) and the next call defines it again.
+ *
+ * Methods excluded from transport (@Export(transport = false)) never resolve.
+ * Id 0 is never assigned; an entry without an id is resolved by method name, as
+ * is one whose id exceeds MAX_ID, which the receiving side does not accept.
+ */
+public class MethodTable {
+
+	public static final int NONE = 0;
+
+	/**
+	 * The largest id the receiving side accepts, which bounds the size of its table.
+	 */
+	public static int MAX_ID = 1 << 16;
+
+	private static final AtomicInteger idCount = new AtomicInteger(NONE);
+	private static final ConcurrentHashMap<Method, Integer> ids = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<Method, Boolean> transported = new ConcurrentHashMap<>();
+	private static final ClassValue<Map<String, Method>> signatures = new ClassValue<Map<String, Method>>() {
+		@Override
+		protected Map<String, Method> computeValue(Class<?> type) {
+			Map<String, Method> res = new HashMap<>();
+			for (Method m : type.getMethods()) {
+				if ( isTransported(m) )
+					res.put(signatureOf(m), m);
+			}
+			return res;
+		}
+	};
+
+	// generated proxies override methods without their annotations, so look at the overridden ones too
+	private static Export exportOf(Class<?> type, Method method) {
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			try {
+				Export e = c.getDeclaredMethod(method.getName(), method.getParameterTypes()).getAnnotation(Export.class);
+				if ( e != null )
+					return e;
+			} catch (NoSuchMethodException ignored) {
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return whether a method may be called remotely, i.e. neither it nor a method
+	 * it overrides is annotated with @Export(transport = false)
+	 */
+	public static boolean isTransported(Method method) {
+		Boolean res = transported.get(method);
+		if ( res == null )
+			res = transported.computeIfAbsent(method, m -> {
+				Export e = exportOf(m.getDeclaringClass(), m);
+				return e == null || e.transport();
+			});
+		return res;
+	}
+
+	/**
+	 * @return the process-wide id of a method, assigned on first use
+	 */
+	public static int idOf(Method method) {
+		Integer id = ids.get(method);
+		if ( id == null )
+			id = ids.computeIfAbsent(method, m -> idCount.incrementAndGet());
+		return id;
+	}
+
+	/**
+	 * @return the method name followed by its parameter type names,
+	 * e.g. "echo(java.lang.String,int)"
+	 */
+	public static String signatureOf(Method method) {
+		StringBuilder sb = new StringBuilder(method.getName()).append('(');
+		Class<?>[] params = method.getParameterTypes();
+		for (int i = 0; i < params.length; i++) {
+			if ( i > 0 )
+				sb.append(',');
+			sb.append(params[i].getName());
+		}
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * @return the public method of clazz with the given signature, or null if
+	 * there is none or it is not allowed to be called remotely
+	 */
+	public static Method resolve(Class<?> clazz, String signature) {
+		return signatures.get(clazz).get(signature);
+	}
+
+	// sending side, touched by the thread polling the remote refs of a connection and,
+	// if an entry can not be encoded, by the thread encoding it
+	private final BitSet defined = new BitSet();
+
+	// receiving side, only touched by the thread reading the connection
+	private Method[] methods = new Method[16];
+	private String[] defs = new String[16];
+
+	/**
+	 * Sending side: marks an id as used on this connection.
+	 *
+	 * @return true if this is its first use, so its signature has to be sent along
+	 */
+	public synchronized boolean define(int id) {
+		if ( defined.get(id) )
+			return false;
+		defined.set(id);
+		return true;
+	}
+
+	/**
+	 * Sending side: forgets that an id is used on this connection, because the
+	 * entry carrying its signature was lost before it was written.
+	 */
+	public synchronized void forget(int id) {
+		defined.clear(id);
+	}
+
+	/**
+	 * Receiving side: records the signature sent along with the first use of an
+	 * id and resolves it against the class of the target nucleus.
+	 *
+	 * @return the resolved method or null if the class has no such method or the
+	 * id is out of range
+	 */
+	public Method define(int id, String signature, Class<?> target) {
+		if ( id <= NONE || id > MAX_ID )
+			return null;
+		if ( id >= methods.length ) {
+			int len = Math.max(id + 1, methods.length * 2);
+			methods = Arrays.copyOf(methods, len);
+			defs = Arrays.copyOf(defs, len);
+		}
+		defs[id] = signature;
+		return methods[id] = resolve(target, signature);
+	}
+
+	/**
+	 * Receiving side: resolves a previously defined id. Falls back to the
+	 * signature in case the same id is used for a nucleus of another class.
+	 *
+	 * @return the method or null if the id is unknown or does not fit the target
+	 */
+	public Method lookup(int id, Class<?> target) {
+		if ( id <= NONE || id >= methods.length )
+			return null;
+		Method method = methods[id];
+		if ( method != null && method.getDeclaringClass().isAssignableFrom(target) )
+			return method;
+		String signature = defs[id];
+		return signature == null ? null : resolve(target, signature);
+	}
+}
@@ -22,6 +22,8 @@
 
 package com.avaidyam.binoculars.remoting.encoding;
 
+import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
+
 import java.io.Serializable;
 import java.util.Arrays;
 
@@ -32,9 +34,12 @@ public class RemoteCallEntry implements Serializable {
 
 	int receiverKey; // id of published nuclei in host, contains cbId in case of callbacks
 	int futureKey; // id of future if any
-	String method;
+	int methodId; // see MethodTable, 0 if the method is given by name
+	String method; // method name, or its signature if methodId is used for the first time
 	Object args[];
 	int queue;
+	transient MethodTable definedIn; // sending side table that marked methodId as defined by this entry
+	transient RemoteRegistry sentBy; // sending side registry holding the callback of futureKey
 
 	public RemoteCallEntry(int futureKey, int receiverKey, String method, Object[] args) {
 		this.receiverKey = receiverKey;
@@ -43,6 +48,11 @@ public class RemoteCallEntry implements Serializable {
 		this.args = args;
 	}
 
+	public RemoteCallEntry(int futureKey, int receiverKey, int methodId, String method, Object[] args) {
+		this(futureKey, receiverKey, method, args);
+		this.methodId = methodId;
+	}
+
 	public int getQueue() {
 		return queue;
 	}
@@ -67,6 +77,14 @@ public class RemoteCallEntry implements Serializable {
 		this.futureKey = futureKey;
 	}
 
+	public int getMethodId() {
+		return methodId;
+	}
+
+	public void setMethodId(int methodId) {
+		this.methodId = methodId;
+	}
+
 	public String getMethod() {
 		return method;
 	}
@@ -75,6 +93,41 @@ public class RemoteCallEntry implements Serializable {
 		this.method = method;
 	}
 
+	/**
+	 * Records that this entry carries the definition of its method id for the given
+	 * sending side table, so the definition can be withdrawn if the entry is lost.
+	 */
+	public void setDefinedIn(MethodTable table) {
+		this.definedIn = table;
+	}
+
+	/**
+	 * Records the sending side registry holding the callback of the future key, so
+	 * the callback can be failed if the entry is lost.
+	 */
+	public void setSentBy(RemoteRegistry registry) {
+		this.sentBy = registry;
+	}
+
+	/**
+	 * Called if this entry could not be encoded: forgets its method id in the table
+	 * that defined it, so the next call resends the signature, and fails the callback
+	 * waiting for its result, which will never arrive.
+	 *
+	 * @param cause the reason the entry could not be encoded
+	 */
+	public void failed(Throwable cause) {
+		if ( definedIn != null ) {
+			definedIn.forget(methodId);
+			definedIn = null;
+		}
+		if ( sentBy != null ) {
+			if ( futureKey != 0 )
+				sentBy.failPublishedCallback(futureKey, cause);
+			sentBy = null;
+		}
+	}
+
 	public Object[] getArgs() {
 		return args;
 	}
@@ -88,6 +141,7 @@ public class RemoteCallEntry implements Serializable {
 		return "RemoteCallEntry{" +
 				"receiverKey=" + receiverKey +
 				", futureKey=" + futureKey +
+				", methodId=" + methodId +
 				", method='" + method + '\'' +
 				", args=" + Arrays.toString(args) +
 				", queue=" + queue +
@@ -31,5 +31,9 @@ public enum SerializerType {
 	Json,
 	JsonNoRef,
 	JsonNoRefPretty,
-	UnsafeBinary
+	UnsafeBinary,
+	/**
+	 * FSTSer with the compact codecs for common payloads registered (see Coding).
+	 */
+	Compact
 }
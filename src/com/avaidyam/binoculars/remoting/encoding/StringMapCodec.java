@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.encoding;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes a HashMap whose keys and values are all Strings as its size followed
+ * by the key and value strings, without class tags or reference tracking for
+ * the entries. A map holding anything else (or null) is written entry by entry
+ * with writeObject.
+ */
+public class StringMapCodec implements Codec<HashMap> {
+
+	static final byte STRINGS = 0, OBJECTS = 1;
+
+	@Override
+	public void encode(HashMap value, ObjectOutput out) throws IOException {
+		boolean strings = true;
+		for (Object o : value.entrySet()) {
+			Map.Entry e = (Map.Entry) o;
+			if ( !(e.getKey() instanceof String) || !(e.getValue() instanceof String) ) {
+				strings = false;
+				break;
+			}
+		}
+		out.writeByte(strings ? STRINGS : OBJECTS);
+		out.writeInt(value.size());
+		for (Object o : value.entrySet()) {
+			Map.Entry e = (Map.Entry) o;
+			if ( strings ) {
+				out.writeUTF((String) e.getKey());
+				out.writeUTF((String) e.getValue());
+			} else {
+				out.writeObject(e.getKey());
+				out.writeObject(e.getValue());
+			}
+		}
+	}
+
+	@Override
+	public HashMap decode(ObjectInput in) throws IOException, ClassNotFoundException {
+		boolean strings = in.readByte() == STRINGS;
+		int size = in.readInt();
+		HashMap res = new HashMap(Math.max(16, (int) (size / 0.75f) + 1));
+		for (int i = 0; i < size; i++) {
+			if ( strings )
+				res.put(in.readUTF(), in.readUTF());
+			else
+				res.put(in.readObject(), in.readObject());
+		}
+		return res;
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import sun.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static external.jaq.util.UnsafeAccess.UNSAFE;
+
+/**
+ * A single producer, single consumer byte ring in a memory mapped file, so that it can
+ * be shared by two processes. One thread of one process writes, one thread of the other
+ * reads. The bytes are a stream; framing is up to the user (see FrameCodec).
+ *
+ * The file starts with a header holding the producer's and the consumer's positions
+ * (each on its own cache line), a heartbeat of either side and a closed flag, followed
+ * by the data area, whose size is a power of two. Positions only ever grow; written
+ * data is published by an ordered store of the producer's position, and freed space by
+ * one of the consumer's.
+ */
+public class MappedRing {
+
+	static final int TAIL = 0;                // written by the producer
+	static final int HEAD = 64;               // written by the consumer
+	static final int PRODUCER_HEARTBEAT = 128;
+	static final int CONSUMER_HEARTBEAT = 192;
+	static final int CLOSED = 256;
+	static final int HEADER_SIZE = 320;
+
+	private static final long BYTE_ARRAY_BASE = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+	private final File file;
+	private final MappedByteBuffer buffer; // keeps the mapping alive
+	private final long address;
+	private final long data;
+	private final int capacity;
+	private final int mask;
+	private long tail; // the producer's own position
+	private long head; // the consumer's own position
+
+	private MappedRing(File file, MappedByteBuffer buffer, int capacity) {
+		this.file = file;
+		this.buffer = buffer;
+		this.address = ((DirectBuffer) buffer).address();
+		this.data = address + HEADER_SIZE;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.tail = UNSAFE.getLongVolatile(null, address + TAIL);
+		this.head = UNSAFE.getLongVolatile(null, address + HEAD);
+	}
+
+	/**
+	 * Creates a new ring file.
+	 *
+	 * @param file the file, which must not exist yet
+	 * @param capacity the size of the data area, rounded up to a power of two
+	 * @return the ring
+	 * @throws IOException if the file exists or can not be mapped
+	 */
+	public static MappedRing create(File file, int capacity) throws IOException {
+		if ( !file.createNewFile() )
+			throw new IOException(file + " exists");
+		int size = Integer.highestOneBit(Math.max(capacity, 4096) - 1) << 1;
+		return map(file, size);
+	}
+
+	/**
+	 * Opens a ring file created by another process.
+	 *
+	 * @param file the file
+	 * @return the ring
+	 * @throws IOException if the file does not hold a ring
+	 */
+	public static MappedRing open(File file) throws IOException {
+		long size = file.length() - HEADER_SIZE;
+		if ( size <= 0 || Long.bitCount(size) != 1 || size > (1 << 30) )
+			throw new IOException(file + " is not a ring");
+		return map(file, (int) size);
+	}
+
+	private static MappedRing map(File file, int capacity) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(HEADER_SIZE + capacity);
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+			return new MappedRing(file, buffer, capacity);
+		}
+	}
+
+	/**
+	 * Writes as many bytes as there is room for. Producer only.
+	 *
+	 * @return the number of bytes written
+	 */
+	public int write(byte[] src, int off, int len) {
+		int free = capacity - (int) (tail - UNSAFE.getLongVolatile(null, address + HEAD));
+		int n = Math.min(len, free);
+		if ( n <= 0 )
+			return 0;
+		int index = (int) (tail & mask);
+		int first = Math.min(n, capacity - index);
+		UNSAFE.copyMemory(src, BYTE_ARRAY_BASE + off, null, data + index, first);
+		if ( n > first )
+			UNSAFE.copyMemory(src, BYTE_ARRAY_BASE + off + first, null, data, n - first);
+		tail += n;
+		UNSAFE.putOrderedLong(null, address + TAIL, tail);
+		return n;
+	}
+
+	/**
+	 * Reads as many bytes as are available, up to len. Consumer only.
+	 *
+	 * @return the number of bytes read
+	 */
+	public int read(byte[] dst, int off, int len) {
+		int available = (int) (UNSAFE.getLongVolatile(null, address + TAIL) - head);
+		int n = Math.min(len, available);
+		if ( n <= 0 )
+			return 0;
+		int index = (int) (head & mask);
+		int first = Math.min(n, capacity - index);
+		UNSAFE.copyMemory(null, data + index, dst, BYTE_ARRAY_BASE + off, first);
+		if ( n > first )
+			UNSAFE.copyMemory(null, data, dst, BYTE_ARRAY_BASE + off + first, n - first);
+		head += n;
+		UNSAFE.putOrderedLong(null, address + HEAD, head);
+		return n;
+	}
+
+	/**
+	 * @return the number of bytes written but not read yet
+	 */
+	public int available() {
+		return (int) (UNSAFE.getLongVolatile(null, address + TAIL) - UNSAFE.getLongVolatile(null, address + HEAD));
+	}
+
+	public void producerHeartbeat(long millis) {
+		UNSAFE.putOrderedLong(null, address + PRODUCER_HEARTBEAT, millis);
+	}
+
+	public long getProducerHeartbeat() {
+		return UNSAFE.getLongVolatile(null, address + PRODUCER_HEARTBEAT);
+	}
+
+	public void consumerHeartbeat(long millis) {
+		UNSAFE.putOrderedLong(null, address + CONSUMER_HEARTBEAT, millis);
+	}
+
+	public long getConsumerHeartbeat() {
+		return UNSAFE.getLongVolatile(null, address + CONSUMER_HEARTBEAT);
+	}
+
+	/**
+	 * Marks the ring closed, for either side to see.
+	 */
+	public void close() {
+		UNSAFE.putIntVolatile(null, address + CLOSED, 1);
+	}
+
+	public boolean isClosed() {
+		return UNSAFE.getIntVolatile(null, address + CLOSED) != 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
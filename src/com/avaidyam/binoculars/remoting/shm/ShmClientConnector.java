@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.remoting.base.ConnectibleNucleus;
+import com.avaidyam.binoculars.remoting.base.ObjectFlow;
+
+import java.io.File;
+import java.net.ConnectException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Connects to a nucleus published by a ShmServerConnector of another process on the
+ * same host.
+ */
+public class ShmClientConnector implements ConnectibleNucleus.NucleusClientConnector {
+
+	/**
+	 * The time in milliseconds to wait for the server to accept a connection.
+	 */
+	public static long CONNECT_TIMEOUT = 5000;
+
+	public static class RemotingHelper extends Nucleus<RemotingHelper> {}
+	protected static AtomicReference<RemotingHelper> singleton = new AtomicReference<>();
+
+	/**
+	 * in case clients are connected from non nuclei world, provide a global nuclei(thread) for remote client processing
+	 * (=polling queues, encoding)
+	 */
+	protected static RemotingHelper get() {
+		synchronized (singleton) {
+			if ( singleton.get() == null ) {
+				singleton.set(Nucleus.of(RemotingHelper.class));
+			}
+			return singleton.get();
+		}
+	}
+
+	protected String name;
+	protected ShmConnection connection;
+	protected Signal<ConnectibleNucleus.NucleusClientConnector> disconnectSignal;
+
+	public ShmClientConnector(String name, Signal<ConnectibleNucleus.NucleusClientConnector> disconnectSignal) {
+		this.name = name;
+		this.disconnectSignal = disconnectSignal;
+	}
+
+	@Override
+	public Future connect(Function<ObjectFlow.Source, ObjectFlow.Sink> factory) throws Exception {
+		File dir = ShmServerConnector.endpoint(name);
+		if ( !new File(dir, ShmServerConnector.SERVER).exists() )
+			throw new ConnectException("no nucleus published as " + name + " in " + dir);
+
+		String id = UUID.randomUUID().toString();
+		File c2s = new File(dir, id + ShmServerConnector.CLIENT_TO_SERVER);
+		File s2c = new File(dir, id + ShmServerConnector.SERVER_TO_CLIENT);
+		File ready = new File(dir, id + ShmServerConnector.READY);
+		try {
+			MappedRing out = MappedRing.create(c2s, ShmServerConnector.RING_SIZE);
+			MappedRing in = MappedRing.create(s2c, ShmServerConnector.RING_SIZE);
+			out.producerHeartbeat(System.currentTimeMillis());
+			if ( !ready.createNewFile() )
+				throw new ConnectException("can not connect to " + name);
+
+			// the server stamps its heartbeat once it has mapped the rings
+			long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+			while ( in.getProducerHeartbeat() == 0 ) {
+				if ( System.currentTimeMillis() > deadline ) {
+					out.close(); // in case the server accepts just now
+					throw new ConnectException("connection to " + name + " timed out");
+				}
+				LockSupport.parkNanos(100 * 1000);
+			}
+			connection = new ShmConnection(in, out);
+			connection.start(factory.apply(connection), c -> {
+				if ( disconnectSignal != null )
+					disconnectSignal.complete(this, null);
+			});
+		} finally {
+			ready.delete();
+			c2s.delete();
+			s2c.delete();
+		}
+		return new CompletableFuture<>(null);
+	}
+
+	@Override
+	public Future disconnect() {
+		if ( connection != null )
+			connection.close();
+		return new CompletableFuture<>();
+	}
+}
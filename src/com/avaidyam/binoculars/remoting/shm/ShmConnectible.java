@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.remoting.base.ConnectibleNucleus;
+import com.avaidyam.binoculars.remoting.base.NucleusClient;
+import com.avaidyam.binoculars.remoting.encoding.Coding;
+import com.avaidyam.binoculars.remoting.encoding.SerializerType;
+import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+
+import java.util.function.Consumer;
+
+/**
+ * Describes a ConnectibleNucleus published through shared memory by another process on
+ * the same host (see ShmServerConnector).
+ */
+public class ShmConnectible<T extends Nucleus> implements ConnectibleNucleus<T> {
+
+	/**
+	 * The inbound queue size. (Default == ElasticScheduler.DEFQSIZE)
+	 */
+	/*package*/ static int inboundQueueSize = ElasticScheduler.DEFQSIZE;
+
+	/**
+	 * The ConnectibleNucleus class.
+	 */
+	/*package*/ Class<T> nucleusClass = null;
+
+	/**
+	 * The name the nucleus is published as.
+	 */
+	/*package*/ String name = "";
+
+	/**
+	 * The Coding used, which has to match the server's. (Default == FSTSer)
+	 */
+	/*package*/ Coding coding = new Coding(SerializerType.FSTSer);
+
+	/**
+	 * Create a new ShmConnectible with the provided parameters.
+	 *
+	 * @param nucleusClass the ConnectibleNucleus class
+	 * @param name the name the nucleus is published as
+	 */
+	public ShmConnectible(Class<T> nucleusClass, String name) {
+		this.nucleusClass = nucleusClass;
+		this.name = name;
+	}
+
+	/**
+	 * Connects to the remote Nucleus with provided disconnection Signals.
+	 *
+	 * @apiNote disconnectHandler is rarely used or needed.
+	 *
+	 * @param disconnectSignal called on disconnect
+	 * @param disconnectHandler called on disconnect, with the RemoteNucleus.
+	 * @return a Future containing the Nucleus reference
+	 */
+	@Override
+	public Future<T> connect(Signal<NucleusClientConnector> disconnectSignal, Consumer<T> disconnectHandler) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable connect = () -> {
+			ShmClientConnector client = new ShmClientConnector(this.name, disconnectSignal);
+			NucleusClient<T> connector = new NucleusClient(client, this.nucleusClass, this.coding);
+			connector.connect(ShmConnectible.inboundQueueSize, disconnectHandler).then(result);
+		};
+
+		if ( !Nucleus.inside() ) {
+			ShmClientConnector.get().execute(() -> Thread.currentThread().setName("singleton remote client nuclei polling"));
+			ShmClientConnector.get().execute(connect);
+		} else connect.run();
+		return result;
+	}
+
+	public Class<T> getNucleusClass() {
+		return nucleusClass;
+	}
+
+	public void setNucleusClass(Class<T> nucleusClass) {
+		this.nucleusClass = nucleusClass;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Coding getCoding() {
+		return coding;
+	}
+
+	/**
+	 * Sets the Coding, which has to match the one the server is published with.
+	 *
+	 * @param coding the Coding
+	 */
+	public void setCoding(Coding coding) {
+		this.coding = coding;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.remoting.base.ObjectFlow;
+import com.avaidyam.binoculars.remoting.encoding.FrameCodec;
+import org.nustaq.serialization.FSTConfiguration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A connection over a pair of MappedRings, one for each direction. Objects are sent and
+ * received as length prefixed frames (see FrameCodec), in batches like the ones of
+ * ObjectAsyncSourceConnection, so the RemoteRegistry can not tell it from a socket.
+ *
+ * Objects can be written and flushed from any thread; they are encoded, written to the
+ * ring and received on the ShmPoller thread. Each side stamps a heartbeat into the rings
+ * every HEARTBEAT_INTERVAL, and a connection whose peer has not done so for PEER_TIMEOUT
+ * (i.e. its process died) is closed, as is one whose peer closed the rings.
+ *
+ * The poller thread is shared by all connections and must never block, so received
+ * objects the sink holds back for a full mailbox stop the reading of this connection's
+ * ring until the sink has delivered them (see ObjectFlow.Sink.deliverHeld).
+ */
+public class ShmConnection implements ObjectFlow.Source, ShmPoller.Pollable {
+
+	public static long HEARTBEAT_INTERVAL = 100;
+	public static long PEER_TIMEOUT = 5000;
+	public static int READ_CHUNK_SIZE = 64 * 1024;
+
+	final MappedRing in;
+	final MappedRing out;
+	final ShmPoller poller;
+	final FrameCodec codec = new FrameCodec(null);
+	final byte[] chunk = new byte[READ_CHUNK_SIZE];
+	final ByteBuffer chunkBuf = ByteBuffer.wrap(chunk);
+	final ConcurrentLinkedQueue<Object> objects = new ConcurrentLinkedQueue<>();
+	final ArrayList batch = new ArrayList();
+	final AtomicBoolean closeRequested = new AtomicBoolean(false);
+	FSTConfiguration conf;
+	ObjectFlow.Sink sink;
+	Consumer<ShmConnection> closeHandler;
+	Throwable lastError;
+	int sent; // bytes of the codec's write buffer already in the ring
+	long lastHeartbeat;
+	volatile int backlog; // encoded bytes not in the ring yet
+	volatile boolean isClosed;
+
+	public ShmConnection(MappedRing in, MappedRing out) {
+		this(in, out, ShmPoller.get());
+	}
+
+	public ShmConnection(MappedRing in, MappedRing out, ShmPoller poller) {
+		this.in = in;
+		this.out = out;
+		this.poller = poller;
+	}
+
+	/**
+	 * Sets the sink receiving the objects and a handler called once the connection is
+	 * closed, then starts polling.
+	 */
+	public void start(ObjectFlow.Sink sink, Consumer<ShmConnection> closeHandler) {
+		this.sink = sink;
+		this.closeHandler = closeHandler;
+		poller.register(this);
+	}
+
+	@Override
+	public void setConf(FSTConfiguration conf) {
+		this.conf = conf;
+		codec.setConf(conf);
+	}
+
+	@Override
+	public FSTConfiguration getConf() {
+		return conf;
+	}
+
+	// may be called from any thread, objects are encoded on the poller thread
+	@Override
+	public void writeObject(Object toWrite) {
+		objects.add(toWrite);
+	}
+
+	@Override
+	public void flush() {
+		poller.wakeup();
+	}
+
+	@Override
+	public boolean canWrite() {
+		return backlog < out.getCapacity();
+	}
+
+	@Override
+	public boolean poll(long now) {
+		if ( isClosed )
+			return false;
+		boolean busy = false;
+		try {
+			busy = receive() | send();
+			if ( closeRequested.get() && objects.isEmpty() && backlog == 0 ) {
+				closed(null);
+				return busy;
+			}
+			if ( now - lastHeartbeat >= HEARTBEAT_INTERVAL ) {
+				lastHeartbeat = now;
+				out.producerHeartbeat(now);
+				in.consumerHeartbeat(now);
+				if ( in.isClosed() || out.isClosed() ) {
+					receive(); // what the peer wrote before closing
+					closed(null);
+				} else if ( now - in.getProducerHeartbeat() > PEER_TIMEOUT ) {
+					closed(new IOException("peer stopped responding"));
+				}
+			}
+		} catch (Exception e) {
+			lastError = e;
+			closed(e);
+		}
+		return busy;
+	}
+
+	boolean receive() throws Exception {
+		boolean received = false;
+		int n;
+		while ( deliverFrames() && (n = in.read(chunk, 0, chunk.length)) > 0 ) {
+			chunkBuf.limit(n).position(0);
+			codec.receive(chunkBuf);
+			received = true;
+		}
+		return received;
+	}
+
+	// delivers the received frames, returns false while the sink holds objects back
+	boolean deliverFrames() throws Exception {
+		boolean clear;
+		while ( (clear = sink.deliverHeld()) && codec.hasFrame() )
+			sink.receiveObject(codec.decode(), null);
+		return clear;
+	}
+
+	boolean send() throws IOException {
+		if ( !objects.isEmpty() ) {
+			Object o;
+			while ( (o = objects.poll()) != null )
+				batch.add(o);
+			batch.add(0); // sequence
+			codec.encode(batch.toArray());
+			batch.clear();
+		}
+		int pending = codec.getWriteLength() - sent;
+		if ( pending == 0 )
+			return false;
+		int written = out.write(codec.getWriteBuffer(), sent, pending);
+		sent += written;
+		if ( sent == codec.getWriteLength() ) {
+			codec.clearWrite();
+			sent = 0;
+		}
+		backlog = codec.getWriteLength() - sent;
+		return written > 0;
+	}
+
+	/**
+	 * Closes the connection once what has been written so far is in the ring, or the
+	 * peer closed the rings or stopped responding.
+	 */
+	@Override
+	public void close() {
+		if ( closeRequested.compareAndSet(false, true) )
+			poller.wakeup();
+	}
+
+	// poller thread only
+	void closed(Throwable error) {
+		if ( isClosed )
+			return;
+		isClosed = true;
+		in.close();
+		out.close();
+		poller.unregister(this);
+		if ( error != null )
+			Log.w(this.toString(), error.getMessage());
+		if ( sink != null )
+			sink.sinkClosed();
+		if ( closeHandler != null )
+			closeHandler.accept(this);
+	}
+
+	@Override
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	@Override
+	public void setLastError(Throwable ex) {
+		lastError = ex;
+	}
+
+	@Override
+	public Throwable getLastError() {
+		return lastError;
+	}
+}
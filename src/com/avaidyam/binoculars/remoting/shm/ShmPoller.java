@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import com.avaidyam.binoculars.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The thread servicing the shared memory connections (and servers) of the process.
+ * A peer in another process can not wake this thread up, so it polls: while there is
+ * traffic it spins, then it yields for a while, and once idle it parks for increasing
+ * periods of up to MAX_PARK_NANOS. Writers within the process wake it up right away
+ * (see wakeup). Latency is so a few microseconds under load, and at most MAX_PARK_NANOS
+ * for the first message after an idle period.
+ *
+ * Everything registered is handled only by this thread; any other work on it has to be
+ * passed to the thread with execute().
+ */
+public class ShmPoller extends Thread implements Executor {
+
+	/**
+	 * The number of idle passes spent spinning, then yielding, before parking.
+	 */
+	public static int SPIN_PASSES = 1000;
+	public static int YIELD_PASSES = 100;
+
+	/**
+	 * The longest time an idle poller parks in nanoseconds.
+	 */
+	public static long MAX_PARK_NANOS = 1000 * 1000;
+	public static long MIN_PARK_NANOS = 10 * 1000;
+
+	private static volatile ShmPoller shared;
+
+	/**
+	 * @return the poller shared by all shared memory connectors, started on first use
+	 */
+	public static ShmPoller get() {
+		ShmPoller poller = shared;
+		if ( poller == null ) {
+			synchronized (ShmPoller.class) {
+				if ( shared == null ) {
+					shared = new ShmPoller("binoculars-shm");
+					shared.start();
+				}
+				poller = shared;
+			}
+		}
+		return poller;
+	}
+
+	/**
+	 * Registered with the poller, polled on each pass.
+	 */
+	public interface Pollable {
+
+		/**
+		 * @param now the current time in milliseconds
+		 * @return true if there was anything to do
+		 */
+		boolean poll(long now);
+	}
+
+	final ArrayList<Pollable> pollables = new ArrayList<>();
+	final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	volatile boolean parked;
+	volatile boolean wakeupRequested;
+
+	ShmPoller(String name) {
+		super(name);
+		setDaemon(true);
+	}
+
+	/**
+	 * Runs a task on this thread.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		tasks.add(task);
+		wakeup();
+	}
+
+	public void wakeup() {
+		wakeupRequested = true;
+		if ( parked )
+			LockSupport.unpark(this);
+	}
+
+	/**
+	 * Starts polling the given Pollable. May be called from any thread.
+	 */
+	public void register(Pollable pollable) {
+		execute(() -> pollables.add(pollable));
+	}
+
+	/**
+	 * Stops polling the given Pollable. Poller thread only.
+	 */
+	void unregister(Pollable pollable) {
+		pollables.remove(pollable);
+	}
+
+	@Override
+	public void run() {
+		int idle = 0;
+		long park = MIN_PARK_NANOS;
+		while ( true ) {
+			boolean busy = false;
+			wakeupRequested = false;
+			Runnable task;
+			while ( (task = tasks.poll()) != null ) {
+				busy = true;
+				try {
+					task.run();
+				} catch (Throwable e) {
+					Log.w(this.toString(), "", e);
+				}
+			}
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < pollables.size(); i++) {
+				try {
+					if ( pollables.get(i).poll(now) )
+						busy = true;
+				} catch (Throwable e) {
+					Log.w(this.toString(), "", e);
+				}
+			}
+			if ( busy ) {
+				idle = 0;
+				park = MIN_PARK_NANOS;
+			} else if ( ++idle > SPIN_PASSES + YIELD_PASSES ) {
+				parked = true;
+				if ( !wakeupRequested )
+					LockSupport.parkNanos(this, park);
+				parked = false;
+				park = Math.min(MAX_PARK_NANOS, park * 2);
+			} else if ( idle > SPIN_PASSES ) {
+				Thread.yield();
+			}
+		}
+	}
+}
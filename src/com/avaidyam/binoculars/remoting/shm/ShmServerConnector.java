@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.remoting.shm;
+
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.remoting.base.NucleusServer;
+import com.avaidyam.binoculars.remoting.base.NucleusServerConnector;
+import com.avaidyam.binoculars.remoting.base.ObjectFlow;
+import com.avaidyam.binoculars.remoting.encoding.Coding;
+import com.avaidyam.binoculars.remoting.tcp.TCPServerConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Publishes a nucleus to other processes on the same host through shared memory. Each
+ * published nucleus has a directory named after it in DIRECTORY (by default /dev/shm).
+ * A client connects by creating a pair of MappedRings in there and then a ".ready" file;
+ * the server maps the rings, removes the files (the mappings stay valid) and stamps its
+ * heartbeat into the ring towards the client, which the client waits for.
+ *
+ * The protocol spoken over the rings is the same as over TCP (see ShmConnection), and
+ * both ends are serviced by the ShmPoller thread of their process.
+ *
+ * Like a TCP server, closing the server stops accepting clients, and closes the accepted
+ * connections after TCPServerConnector.DELAY_MS_TILL_CLOSE.
+ */
+public class ShmServerConnector implements NucleusServerConnector, ShmPoller.Pollable {
+
+	/**
+	 * The directory holding the directories of published nuclei.
+	 */
+	public static File DIRECTORY = new File("/dev/shm").isDirectory() ? new File("/dev/shm") : new File(System.getProperty("java.io.tmpdir"));
+
+	/**
+	 * The size of the ring of each direction of a connection.
+	 */
+	public static int RING_SIZE = 1 << 20;
+
+	/**
+	 * The interval in milliseconds at which a server looks for connecting clients.
+	 */
+	public static long ACCEPT_INTERVAL = 10;
+
+	static final String SERVER = "server";
+	static final String READY = ".ready";
+	static final String CLIENT_TO_SERVER = ".c2s";
+	static final String SERVER_TO_CLIENT = ".s2c";
+
+	static File endpoint(String name) {
+		return new File(DIRECTORY, "binoculars-" + name);
+	}
+
+	public static CompletableFuture<NucleusServer> Publish(Nucleus facade, String name, Coding coding) {
+		return Publish(facade, name, coding, null);
+	}
+
+	public static CompletableFuture<NucleusServer> Publish(Nucleus facade, String name, Coding coding, Consumer<Nucleus> disconnectCB) {
+		CompletableFuture finished = new CompletableFuture();
+		try {
+			NucleusServer publisher = new NucleusServer(new ShmServerConnector(name), facade, coding);
+			facade.execute(() -> {
+				try {
+					publisher.start(disconnectCB);
+					finished.resolve(publisher);
+				} catch (Exception e) {
+					finished.reject(e);
+				}
+			});
+		} catch (Exception e) {
+			e.printStackTrace();
+			return new CompletableFuture(null, e);
+		}
+		return finished;
+	}
+
+	final String name;
+	final File dir;
+	final ShmPoller poller = ShmPoller.get();
+	final ConcurrentLinkedQueue<ShmConnection> connections = new ConcurrentLinkedQueue<>();
+	Nucleus facade;
+	Function<ObjectFlow.Source, ObjectFlow.Sink> factory;
+	long lastScan;
+
+	public ShmServerConnector(String name) {
+		this.name = name;
+		this.dir = endpoint(name);
+	}
+
+	@Override
+	public void connect(Nucleus facade, Function<ObjectFlow.Source, ObjectFlow.Sink> factory) throws Exception {
+		if ( !dir.isDirectory() && !dir.mkdirs() )
+			throw new IOException("can not create " + dir);
+		File server = new File(dir, SERVER);
+		if ( !server.exists() && !server.createNewFile() )
+			throw new IOException("can not create " + server);
+		this.facade = facade;
+		this.factory = factory;
+		poller.register(this);
+	}
+
+	@Override
+	public boolean poll(long now) {
+		if ( now - lastScan < ACCEPT_INTERVAL )
+			return false;
+		lastScan = now;
+		String[] ready = dir.list((d, n) -> n.endsWith(READY));
+		if ( ready == null || ready.length == 0 )
+			return false;
+		for (String r : ready)
+			accept(r.substring(0, r.length() - READY.length()), now);
+		return true;
+	}
+
+	void accept(String id, long now) {
+		if ( !new File(dir, id + READY).delete() )
+			return;
+		File c2s = new File(dir, id + CLIENT_TO_SERVER);
+		File s2c = new File(dir, id + SERVER_TO_CLIENT);
+		try {
+			MappedRing in = MappedRing.open(c2s);
+			MappedRing out = MappedRing.open(s2c);
+			ShmConnection connection = new ShmConnection(in, out, poller);
+			out.producerHeartbeat(now); // accepted
+			connections.add(connection);
+			facade.execute(() -> {
+				ObjectFlow.Sink sink = factory.apply(connection);
+				connection.start(sink, connections::remove);
+			});
+		} catch (IOException e) {
+			Log.w(this.toString(), "can not accept " + id, e);
+		} finally {
+			c2s.delete();
+			s2c.delete();
+		}
+	}
+
+	@Override
+	public Future closeServer() {
+		new File(dir, SERVER).delete();
+		dir.delete(); // if no client is connecting
+		poller.execute(() -> poller.unregister(this));
+
+		// give the connections time to flush, as TCP does (see AsyncServerSocket.close)
+		Nucleus.submitDelayed(TCPServerConnector.DELAY_MS_TILL_CLOSE, () -> connections.forEach(ShmConnection::close));
+		return new CompletableFuture<>(null);
+	}
+}
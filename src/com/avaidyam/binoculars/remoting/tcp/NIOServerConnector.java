@@ -24,6 +24,7 @@
 package com.avaidyam.binoculars.remoting.tcp;
 
 import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.remoting.asyncio.AsyncSocketConnection;
 import com.avaidyam.binoculars.remoting.asyncio.ObjectAsyncSourceConnection;
 import com.avaidyam.binoculars.remoting.base.*;
 import com.avaidyam.binoculars.remoting.encoding.Coding;
@@ -34,6 +35,7 @@ import com.avaidyam.binoculars.future.Future;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -41,7 +43,8 @@ import java.util.function.Function;
  *
  *
  * Publishes an nuclei as a server using non-blocking IO backed TCP.
- * The number of threads does not increase with the number of clients.
+ * The number of threads does not increase with the number of clients,
+ * connections are serviced by the threads of the SelectorPool.
  *
  */
 public class NIOServerConnector extends AsyncServerSocket implements NucleusServerConnector {
@@ -78,12 +81,20 @@ public class NIOServerConnector extends AsyncServerSocket implements NucleusServ
 
     @Override
     public void connect(Nucleus facade, Function<ObjectFlow.Source, ObjectFlow.Sink> factory) throws Exception {
-        connect( port, (key,channel) -> {
+        connect( port, connectionFactory(facade, factory) );
+    }
+
+    // creates the sink of an accepted connection on the facade, then starts reading
+    static BiFunction<SelectionKey, SocketChannel, AsyncSocketConnection> connectionFactory(Nucleus facade, Function<ObjectFlow.Source, ObjectFlow.Sink> factory) {
+        return (key,channel) -> {
             MyObjectAsyncSourceConnection sc = new MyObjectAsyncSourceConnection(key,channel);
-            ObjectFlow.Sink sink = factory.apply(sc);
-            sc.init(sink);
+            facade.execute(() -> {
+                ObjectFlow.Sink sink = factory.apply(sc);
+                sc.init(sink);
+                sc.start();
+            });
             return sc;
-        });
+        };
     }
 
     @Override
@@ -108,15 +119,19 @@ public class NIOServerConnector extends AsyncServerSocket implements NucleusServ
 
         @Override public void receivedObject(Object o) { sink.receiveObject(o, null); }
 
+        @Override protected boolean deliverHeld() { return sink.deliverHeld(); }
+
         @Override
         public void closed(Throwable ioe) {
             isClosed = true;
-            sink.sinkClosed();
+            if ( sink != null )
+                sink.sinkClosed();
         }
 
         public void close() throws IOException {
-            chan.close();
-            sink.sinkClosed();
+            super.close();
+            if ( !isClosed )
+                closed(null);
         }
 
     }
@@ -30,23 +30,24 @@ import com.avaidyam.binoculars.future.Signal;
 import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Future;
 import com.avaidyam.binoculars.Log;
-import org.nustaq.serialization.util.FSTUtil;
 
-import java.io.EOFException;
 import java.io.IOException;
-import java.net.SocketException;
-import java.util.ArrayList;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 /**
- *
+ * Connects to a TCP server (TCPServerConnector or NIOServerConnector). The connection
+ * is serviced by the threads of the SelectorPool.
  */
 public class TCPClientConnector implements ConnectibleNucleus.NucleusClientConnector {
 
     /**
-     * used in most client and server connector implementations
+     * @deprecated objects are no longer batched by count, everything written
+     * until the next flush goes out in one write.
      */
+    @Deprecated
     static int OBJECT_MAX_BATCH_SIZE = 100;
 
     public static class RemotingHelper extends Nucleus<RemotingHelper> {}
@@ -78,34 +79,12 @@ public class TCPClientConnector implements ConnectibleNucleus.NucleusClientConne
 
     @Override
     public Future connect(Function<ObjectFlow.Source, ObjectFlow.Sink> factory) throws Exception {
-        CompletableFuture res = new CompletableFuture();
-        socket = new MyTCPSource(host,port);
-        ObjectFlow.Sink sink = factory.apply(socket);
-        new Thread(() -> {
-            res.complete();
-            while (!socket.isClosed()) {
-                try {
-                    Object o = socket.readObject();
-                    sink.receiveObject(o, null);
-                } catch (Exception e) {
-                    if (e instanceof EOFException == false && e instanceof SocketException == false )
-                        Log.w(this.toString(), "", e);
-                    else {
-                        Log.w(this.toString(), e.getMessage());
-                    }
-                    try {
-                        socket.close();
-                    } catch (IOException e1) {
-                        Log.w(this.toString(), e.getMessage());
-                    }
-                }
-            }
-            if ( disconnectSignal != null ) {
-                disconnectSignal.complete(this,null);
-            }
-            sink.sinkClosed();
-        }, "tcp client receiver").start();
-        return res;
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.configureBlocking(false);
+        socket = new MyTCPSource(channel);
+        socket.init(factory.apply(socket));
+        socket.start();
+        return new CompletableFuture<>(null);
     }
 
 	@Override
@@ -119,38 +98,20 @@ public class TCPClientConnector implements ConnectibleNucleus.NucleusClientConne
         return new CompletableFuture<>();
     }
 
-    static class MyTCPSource extends TCPObjectSocket implements ObjectFlow.Source {
-
-        ArrayList objects = new ArrayList();
-
-        public MyTCPSource(String host, int port) throws IOException {
-            super(host, port);
-        }
+    class MyTCPSource extends NIOServerConnector.MyObjectAsyncSourceConnection {
 
-        @Override
-        public void writeObject(Object toWrite) throws Exception {
-            objects.add(toWrite);
-            if (objects.size()>OBJECT_MAX_BATCH_SIZE) {
-                flush();
-            }
+        public MyTCPSource(SocketChannel channel) {
+            super(null, channel);
         }
 
         @Override
-        public void flush() throws IOException {
-            if ( objects.size() == 0 ) {
-                return;
-            }
-            objects.add(0); // sequence
-            Object[] objArr = objects.toArray();
-            objects.clear();
-
-            try {
-                super.writeObject(objArr);
-            } catch (Exception e) {
-                FSTUtil.<RuntimeException>rethrow(e);
+        public void closed(Throwable ioe) {
+            if ( ioe != null )
+                Log.w(this.toString(), ioe.getMessage());
+            if ( disconnectSignal != null ) {
+                disconnectSignal.complete(TCPClientConnector.this,null);
             }
-
-            super.flush();
+            super.closed(ioe);
         }
     }
 
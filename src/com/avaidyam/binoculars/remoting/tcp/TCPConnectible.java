@@ -25,6 +25,7 @@ package com.avaidyam.binoculars.remoting.tcp;
 
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+import com.avaidyam.binoculars.remoting.base.ConnectionPool;
 import com.avaidyam.binoculars.remoting.base.NucleusClient;
 import com.avaidyam.binoculars.remoting.base.ConnectibleNucleus;
 import com.avaidyam.binoculars.remoting.encoding.Coding;
@@ -60,6 +61,17 @@ public class TCPConnectible<T extends Nucleus> implements ConnectibleNucleus<T>
 	 */
     /*package*/ int port = 0;
 
+	/**
+	 * The Coding used, which has to match the server's. (Default == FSTSer)
+	 */
+	/*package*/ Coding coding = new Coding(SerializerType.FSTSer);
+
+	/**
+	 * Whether to share the connection with other pooled connectibles for the
+	 * same host and port, Nucleus class and Coding. (Default == false)
+	 */
+	/*package*/ boolean pooled = false;
+
     /**
      * Create a new TCPConnectible with the provided parameters.
 	 *
@@ -84,10 +96,15 @@ public class TCPConnectible<T extends Nucleus> implements ConnectibleNucleus<T>
 	 */
     @Override
     public Future<T> connect(Signal<NucleusClientConnector> disconnectSignal, Consumer<T> disconnectHandler) {
+        if (this.pooled) {
+            String key = ConnectionPool.key(this.host + ":" + this.port, this.nucleusClass, this.coding);
+            return ConnectionPool.get().connect(key, this::connectPooled, disconnectSignal, disconnectHandler);
+        }
+
         CompletableFuture<T> result = new CompletableFuture<>();
         Runnable connect = () -> {
             TCPClientConnector client = new TCPClientConnector(this.port, this.host, disconnectSignal);
-            NucleusClient<T> connector = new NucleusClient(client, this.nucleusClass, new Coding(SerializerType.FSTSer));
+            NucleusClient<T> connector = new NucleusClient(client, this.nucleusClass, this.coding);
             connector.connect(TCPConnectible.inboundQueueSize, disconnectHandler).then(result);
         };
 
@@ -98,6 +115,20 @@ public class TCPConnectible<T extends Nucleus> implements ConnectibleNucleus<T>
         return result;
     }
 
+	/**
+	 * Connects a pooled connection, always from the shared client nucleus, so that
+	 * it outlives the nucleus of whichever caller happened to create it.
+	 */
+    private Future<T> connectPooled(Signal<NucleusClientConnector> disconnectSignal, Consumer<T> disconnectHandler) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        TCPClientConnector.get().execute(() -> {
+            TCPClientConnector client = new TCPClientConnector(this.port, this.host, disconnectSignal);
+            NucleusClient<T> connector = new NucleusClient(client, this.nucleusClass, this.coding);
+            connector.connect(TCPConnectible.inboundQueueSize, disconnectHandler).then(result);
+        });
+        return result;
+    }
+
 	/**
 	 * Returns the Nucleus class.
 	 *
@@ -151,4 +182,41 @@ public class TCPConnectible<T extends Nucleus> implements ConnectibleNucleus<T>
 	public void setPort(int port) {
 		this.port = port;
 	}
+
+	/**
+	 * Returns the Coding.
+	 *
+	 * @return the Coding
+	 */
+	public Coding getCoding() {
+		return coding;
+	}
+
+	/**
+	 * Sets the Coding, which has to match the one the server is published with.
+	 *
+	 * @param coding the Coding
+	 */
+	public void setCoding(Coding coding) {
+		this.coding = coding;
+	}
+
+	/**
+	 * Returns whether the connection is pooled.
+	 *
+	 * @return whether the connection is pooled
+	 */
+	public boolean isPooled() {
+		return pooled;
+	}
+
+	/**
+	 * Sets whether to share the connection with other pooled connectibles for the
+	 * same host and port, Nucleus class and Coding, instead of opening one per connect().
+	 *
+	 * @param pooled whether the connection is pooled
+	 */
+	public void setPooled(boolean pooled) {
+		this.pooled = pooled;
+	}
 }
@@ -22,6 +22,7 @@
 
 package com.avaidyam.binoculars.scheduler;
 
+import com.avaidyam.binoculars.Channel;
 import com.avaidyam.binoculars.Exceptions;
 import com.avaidyam.binoculars.Log;
 import com.avaidyam.binoculars.Nucleus;
@@ -29,11 +30,20 @@ import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Future;
 import com.avaidyam.binoculars.future.Signal;
 import com.avaidyam.binoculars.remoting.RemoteInvocation;
+import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
 import external.jaq.mpsc.MpscConcurrentQueue;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
@@ -64,11 +74,74 @@ public class Dispatcher extends Thread {
      */
     public static boolean DUMP_EXCEPTIONS = true;
 
+	/**
+	 * Invokes messages through a cached MethodHandle instead of Method.invoke().
+	 * Disabling this falls back to the reflective path (i.e. for comparison).
+	 */
+    public static boolean USE_METHOD_HANDLES = true;
+
+	/**
+	 * Takes RemoteInvocations from per-Dispatcher pools and returns them once
+	 * processed instead of allocating a new one per message.
+	 * See InvocationPool.DEBUG_RECYCLING to detect use-after-release.
+	 */
+    public static boolean RECYCLE_INVOCATIONS = false;
+
+	/**
+	 * Once its backoff reaches the sleeping stage, an idle Dispatcher parks until a
+	 * message is enqueued for one of its Nuclei instead of waking up every millisecond.
+	 */
+    public static boolean SIGNAL_WAKEUP = false;
+
+	/**
+	 * The longest a Dispatcher parks when SIGNAL_WAKEUP is enabled, so housekeeping
+	 * (pending adds, auto shutdown) still happens while idle.
+	 */
+    public static long SIGNAL_PARK_NANOS = 100 * 1000 * 1000;
+
+	/**
+	 * A Future awaited on a Dispatcher suspends the awaiting Nucleus: only its
+	 * callbacks are processed until the Future completes, instead of recursively
+	 * polling all Nuclei of the Dispatcher (which reorders their messages and
+	 * grows the stack with every nested await). Once other Nuclei have sent messages
+	 * to the awaiting Nucleus that the Future may depend on, these are processed.
+	 */
+    public static boolean SUSPEND_ON_AWAIT = true;
+
+	/**
+	 * The number of empty polls a suspended Nucleus waits before the other Nuclei
+	 * of its Dispatcher are moved to another Dispatcher so they don't stall.
+	 */
+    public static int ISOLATE_AFTER_EMPTY_POLLS = SchedulingStrategy.SPIN_UNTIL_YIELD;
+
+	/**
+	 * The number of messages of each lane a suspended Nucleus inspects when looking
+	 * for messages its Future may depend on. A lane holding more is assumed to hold one,
+	 * so the idle checks of a long wait stay cheap however full the mailbox is.
+	 */
+    public static int DEPENDENT_SCAN_LIMIT = 256;
+
 	/**
 	 * The duration specifying how often load profiling and balancing is done.
      */
     public static int SCHEDULE_TICK_NANOS = 1000 * 500;
 
+	/**
+	 * The maximum number of messages drained from a single Nucleus before moving on
+	 * to the next one. With a batch size of 1, lanes are served strictly by priority.
+	 * Applies to Dispatchers created after it is changed.
+	 */
+    public static int DRAIN_BATCH_SIZE = 16;
+
+	/**
+	 * The relative share of each batch given to the high, normal and bulk lanes of a
+	 * Nucleus once its control lane has been drained. Shares left unused by one lane
+	 * go to the others in priority order.
+	 */
+    public static int HIGH_LANE_WEIGHT = 8;
+    public static int NORMAL_LANE_WEIGHT = 4;
+    public static int BULK_LANE_WEIGHT = 1;
+
 	/**
 	 * The threshold percentage for the queue to reach before it is considered
 	 * for rebalancing. That is, if the queue is X% full, it will be rebalanced.
@@ -85,6 +158,31 @@ public class Dispatcher extends Thread {
 	 */
     public static AtomicInteger activeDispatchers = new AtomicInteger(0);
 
+	/**
+	 * The invokers generated for each Method dispatched so far, shared by all Dispatchers.
+	 * Each invoker is of the type (Object target, Object[] args)Object.
+	 */
+    private static final ConcurrentHashMap<Method, MethodHandle> invokers = new ConcurrentHashMap<>();
+
+	/**
+	 * Cached in place of an invoker that could not be generated, so that the
+	 * reflective fallback is chosen once instead of on every invocation.
+	 */
+    private static final MethodHandle NO_INVOKER = MethodHandles.identity(Object.class);
+
+	/**
+	 * Wraps an exception thrown by the target of an invoker, see getInvoker.
+	 */
+    private static final MethodHandle WRAP_TARGET_EXCEPTION;
+    static {
+        try {
+            WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(Dispatcher.class, "wrapTargetException",
+                    MethodType.methodType(Object.class, Throwable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
 	/**
 	 * TODO: FIXME.
 	 */
@@ -95,6 +193,11 @@ public class Dispatcher extends Thread {
 	 */
     public ArrayList<CompletableFuture> __stack = new ArrayList<>();
 
+	/**
+	 * The recycled RemoteInvocations owned by this Dispatcher.
+	 */
+	/*package*/ final InvocationPool invocationPool = new InvocationPool();
+
 	/**
 	 * Has the Dispatcher been shut down?
 	 */
@@ -110,6 +213,11 @@ public class Dispatcher extends Thread {
 	 */
 	/*package*/ volatile boolean isIsolated = false;
 
+	/**
+	 * Is the Dispatcher parked waiting for a wakeup signal?
+	 */
+    private volatile boolean sleeping = false;
+
 	/**
 	 * Will the Dispatcher be shut down automatically?
 	 */
@@ -145,6 +253,27 @@ public class Dispatcher extends Thread {
      */
     int currentPolledNucleus = 0;
 
+    /**
+     * The messages drained from a single Nucleus, processed before polling again.
+     */
+    private final RemoteInvocation batch[] = new RemoteInvocation[Math.max(1, DRAIN_BATCH_SIZE)];
+
+    /**
+     * The position of the next message to process in the batch, and the batch size.
+     */
+    private int batchIndex = 0, batchSize = 0;
+
+    /**
+     * The Channel the current batch was drained from.
+     */
+    private Channel batchChannel;
+
+    /**
+     * The values last set to Nucleus.sender and Nucleus.connection by this Dispatcher.
+     */
+    private Nucleus currentSender;
+    private RemoteRegistry currentConnection;
+
     /**
      * Create a new Dispatcher bound to the given Scheduler.
      *
@@ -166,6 +295,17 @@ public class Dispatcher extends Thread {
         this.autoShutdown = autoShutdown;
     }
 
+    /**
+     * Create a new Dispatcher bound to the given Scheduler, with the given stack size.
+     *
+     * @param scheduler the Scheduler to bind to
+     * @param stackSize the requested stack size of the thread, or 0 for the default
+     */
+    public Dispatcher(Scheduler scheduler, long stackSize) {
+        super(null, null, "Dispatcher" + dtcount.incrementAndGet(), stackSize);
+        this.scheduler = scheduler;
+    }
+
     /**
      * Returns the string representation of the Dispatcher.
      *
@@ -222,6 +362,29 @@ public class Dispatcher extends Thread {
     public void addNucleus(Nucleus nucleus) {
         nucleus.getNucleusRef().__dispatcher = nucleus.getNucleus().__dispatcher = this;
         toAdd.offer(nucleus.getNucleusRef());
+        wakeUp();
+    }
+
+    /**
+     * Unparks the Dispatcher if it is waiting for a wakeup signal. This only costs
+     * a volatile read unless the Dispatcher is actually parked.
+     */
+    public void wakeUp() {
+        if (sleeping)
+            LockSupport.unpark(this);
+    }
+
+    /**
+     * Parks the Dispatcher until woken up by wakeUp() or SIGNAL_PARK_NANOS elapse.
+     *
+     * The flag is raised before the queues are checked a final time, and enqueuers
+     * offer before checking the flag, so a message is never left unnoticed.
+     */
+    private void parkUntilSignalled() {
+        sleeping = true;
+        if (isEmpty() && toAdd.peek() == null && !shutDown)
+            LockSupport.parkNanos(this, SIGNAL_PARK_NANOS);
+        sleeping = false;
     }
 
     /**
@@ -265,6 +428,7 @@ public class Dispatcher extends Thread {
 
                         // Successful poll!
                         emptyCount = 0;
+                        afterPoll();
                         if (System.nanoTime() - scheduleTickTime > SCHEDULE_TICK_NANOS) {
                             if (emptySinceLastCheck == 0) // no idle during last interval
                                 possiblyRebalance();
@@ -275,7 +439,13 @@ public class Dispatcher extends Thread {
                     } else {
                         emptyCount++;
                         emptySinceLastCheck++;
-                        scheduler.pollDelay(emptyCount);
+                        if (whenIdle(emptyCount)) {
+                            emptyCount = 0;
+                            continue;
+                        }
+                        if (SIGNAL_WAKEUP && scheduler.getBackoffStrategy().isSleeping(emptyCount))
+                            parkUntilSignalled();
+                        else scheduler.pollDelay(emptyCount);
                         if (shutDown) // access volatile only when idle
                             isShutDown = true;
 
@@ -283,7 +453,7 @@ public class Dispatcher extends Thread {
                         if (scheduler.getBackoffStrategy().isSleeping(emptyCount)) {
                             scheduleTickTime = 0;
                             schedulePendingAdds();
-                            if (autoShutdown && System.currentTimeMillis() - created > 5000) {
+                            if (autoShutdown && mayShutDown() && System.currentTimeMillis() - created > 5000) {
                                 if (nuclei.length == 0 && toAdd.peek() == null)
                                     shutDown();
                                 else scheduler.tryStopThread(this);
@@ -311,6 +481,30 @@ public class Dispatcher extends Thread {
         }
     }
 
+    /**
+     * Invoked by the main loop after each successful poll. Does nothing by default.
+     */
+    protected void afterPoll() {}
+
+    /**
+     * Invoked by the main loop each time no message was available, before backing off.
+     *
+     * @param emptyCount the number of consecutive empty polls
+     * @return true if work became available and the backoff should be skipped
+     */
+    protected boolean whenIdle(int emptyCount) {
+        return false;
+    }
+
+    /**
+     * Returns whether this Dispatcher may shut down automatically once it has been idle.
+     *
+     * @return whether this Dispatcher may shut down
+     */
+    protected boolean mayShutDown() {
+        return true;
+    }
+
     /**
      * Add all Nuclei which have been marked to be scheduled on this Dispatcher.
      */
@@ -342,6 +536,16 @@ public class Dispatcher extends Thread {
         if (nuclei.length == 0)
             return null;
 
+        // Finish the current batch first, even when polled re-entrantly (i.e. from
+        // defer2), so messages of a Nucleus are still processed in order. A batch
+        // of a Nucleus that was not asked for stays pending; the ones that were
+        // are polled one message at a time so it is not overwritten.
+        if (batchIndex < batchSize) {
+            if (ownsBatch(nuclei))
+                return nextBatched();
+            return pollSingle(nuclei);
+        }
+
         int count = 0;
         RemoteInvocation res = null;
         while (res == null && count < nuclei.length) {
@@ -349,16 +553,150 @@ public class Dispatcher extends Thread {
                 currentPolledNucleus = 0;
 
             Nucleus nucleus2Poll = nuclei[currentPolledNucleus];
-            res = (RemoteInvocation)nucleus2Poll.__channel.outbox.poll();
-
-            if (res == null)
-                res = (RemoteInvocation)nucleus2Poll.__channel.inbox.poll();
+            int size = fill(nucleus2Poll.__channel);
+            if (size > 0) {
+                batchIndex = 0;
+                batchSize = size;
+                batchChannel = nucleus2Poll.__channel;
+                res = nextBatched();
+            }
             currentPolledNucleus++;
             count++;
         }
         return res;
     }
 
+    /**
+     * Returns the first RemoteInvocation available for the given Nuclei, polling
+     * their lanes in priority order without touching the batch.
+     *
+     * @param nuclei the Nuclei to poll
+     * @return an available RemoteInvocation
+     */
+    private RemoteInvocation pollSingle(final Nucleus[] nuclei) {
+        for (Nucleus nucleus : nuclei) {
+            Channel channel = nucleus.__channel;
+            Queue bulk = channel.bulk;
+            Object res = channel.control.poll();
+            if (res == null)
+                res = channel.outbox.poll();
+            if (res == null)
+                res = channel.inbox.poll();
+            if (res == null && bulk != null)
+                res = bulk.poll();
+            if (res != null)
+                return (RemoteInvocation) res;
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the current batch was drained from one of the given Nuclei.
+     *
+     * @param nuclei the Nuclei to check
+     * @return whether the batch belongs to the given Nuclei
+     */
+    private boolean ownsBatch(final Nucleus[] nuclei) {
+        for (Nucleus nucleus : nuclei)
+            if (nucleus.__channel == batchChannel)
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns whether messages drained from the given Nucleus are still waiting in
+     * the current batch. Such a Nucleus must not be moved to another Dispatcher, as
+     * these messages would then be processed here, out of order with the ones
+     * processed there.
+     *
+     * @param nucleus the Nucleus to check
+     * @return whether the current batch belongs to the Nucleus and is not done
+     */
+    /*package*/ boolean hasPendingBatch(Nucleus nucleus) {
+        return batchIndex < batchSize && nucleus.__channel == batchChannel;
+    }
+
+    /**
+     * Fills the batch from the lanes of the given Channel: the control lane first,
+     * then each non-empty lane up to its weighted share, then whatever room is left over
+     * in priority order.
+     *
+     * @param channel the Channel to drain
+     * @return the number of messages in the batch
+     */
+    private int fill(Channel channel) {
+        final int limit = batch.length;
+        int size = drain(channel.control, 0, limit);
+        if (size == limit)
+            return size;
+
+        final Queue bulk = channel.bulk;
+        final int room = limit - size;
+        final int high = channel.outbox.isEmpty() ? 0 : HIGH_LANE_WEIGHT;
+        final int normal = channel.inbox.isEmpty() ? 0 : NORMAL_LANE_WEIGHT;
+        final int low = bulk == null || bulk.isEmpty() ? 0 : BULK_LANE_WEIGHT;
+        final int total = high + normal + low;
+        if (total == 0)
+            return size;
+        int share, drained;
+        boolean capped = false;
+
+        share = Math.min(limit - size, Math.max(1, room * high / total));
+        size += drained = drain(channel.outbox, size, share);
+        capped |= drained == share;
+        share = Math.min(limit - size, Math.max(1, room * normal / total));
+        size += drained = drain(channel.inbox, size, share);
+        capped |= drained == share;
+        if (bulk != null) {
+            share = Math.min(limit - size, Math.max(1, room * low / total));
+            size += drained = drain(bulk, size, share);
+            capped |= drained == share;
+        }
+
+        if (capped && size < limit) {
+            size += drain(channel.outbox, size, limit - size);
+            size += drain(channel.inbox, size, limit - size);
+            if (bulk != null)
+                size += drain(bulk, size, limit - size);
+        }
+        return size;
+    }
+
+    /**
+     * Drains up to limit messages from the given queue into the batch.
+     *
+     * @param queue the queue to drain
+     * @param offset the position in the batch to start at
+     * @param limit the maximum number of messages to drain
+     * @return the number of messages drained
+     */
+    @SuppressWarnings("unchecked")
+    private int drain(Queue queue, int offset, int limit) {
+        if (limit <= 0)
+            return 0;
+        if (queue instanceof MpscConcurrentQueue)
+            return ((MpscConcurrentQueue) queue).poll(batch, offset, limit);
+
+        int count = 0;
+        Object o;
+        while (count < limit && (o = queue.poll()) != null)
+            batch[offset + count++] = (RemoteInvocation) o;
+        return count;
+    }
+
+    /**
+     * Returns the next message of the current batch, or null if it is done.
+     *
+     * @return the next message of the current batch
+     */
+    private RemoteInvocation nextBatched() {
+        if (batchIndex >= batchSize)
+            return null;
+        RemoteInvocation res = batch[batchIndex];
+        batch[batchIndex++] = null;
+        return res;
+    }
+
     /**
      * Returns whether messages exist for any Nuclei given.
      *
@@ -367,81 +705,156 @@ public class Dispatcher extends Thread {
     // TODO RENAME
     public boolean pollQs(Nucleus nuclei[]) {
         RemoteInvocation invocation = pollQueues(nuclei);
-        if (invocation != null) {
-            try {
-                // Before calling the nuclei method, set current sender
-                // to target, so for each method/callback invoked by the nuclei method,
-                // sender has correct value.
-                Nucleus targetNucleus = invocation.getTargetNucleus();
+        if (invocation == null)
+            return false;
+
+        // Process the rest of the batch, unless a nested poll already did or
+        // it belongs to a Nucleus that was not asked for.
+        boolean res = dispatch(invocation);
+        while (ownsBatch(nuclei) && (invocation = nextBatched()) != null)
+            res |= dispatch(invocation);
+        return res;
+    }
+
+    /**
+     * Dispatches a single message to its target.
+     *
+     * @param invocation the message to dispatch
+     * @return false if the message caused an unhandled exception
+     */
+    private boolean dispatch(RemoteInvocation invocation) {
+        try {
+            // Before calling the nuclei method, set current sender
+            // to target, so for each method/callback invoked by the nuclei method,
+            // sender has correct value. Only this Dispatcher sets them on this
+            // thread, so they're only updated when they change.
+            Nucleus targetNucleus = invocation.getTargetNucleus();
+            if (targetNucleus != currentSender) {
                 Nucleus.sender.set(targetNucleus);
-                Nucleus.connection.set(invocation.getRemoteRegistry());
-                if (targetNucleus.__stopped) {
-                    targetNucleus.__addDeadLetter(targetNucleus, invocation.getMethod().getName());
-                    return true;
-                }
+                currentSender = targetNucleus;
+            }
+            RemoteRegistry connection = invocation.getRemoteRegistry();
+            if (connection != currentConnection) {
+                Nucleus.connection.set(connection);
+                currentConnection = connection;
+            }
+            if (targetNucleus.__stopped) {
+                targetNucleus.__addDeadLetter(targetNucleus, invocation.getMethod().getName());
+                return true;
+            }
 
-                // Invoke the RemoteInvocation.
-                Object invoke = null;
-                try {
-                    invoke = invoke(invocation);
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Argument mismatch when invoking method " + invocation);
-                    for (int i = 0; i < invocation.getArgs().length; i++) {
-                        Object o = invocation.getArgs()[i];
-                        System.err.println("arg" + i + "= " + o + (o != null ? o.getClass().getSimpleName() : "[null]") + ", ");
-                    }
-                    System.err.println();
-                    throw e;
+            // Invoke the RemoteInvocation.
+            Object invoke = null;
+            try {
+                invoke = invoke(invocation);
+            } catch (IllegalArgumentException | ClassCastException | NullPointerException | WrongMethodTypeException e) {
+                // Exceptions thrown by the target arrive wrapped, so these come from the arguments.
+                System.err.println("Argument mismatch when invoking method " + invocation);
+                for (int i = 0; i < invocation.getArgs().length; i++) {
+                    Object o = invocation.getArgs()[i];
+                    System.err.println("arg" + i + "= " + o + (o != null ? o.getClass().getSimpleName() : "[null]") + ", ");
                 }
+                System.err.println();
+                throw e;
+            }
 
-                // Handle any attached Futures.
-                // If the invocation returns null instead of a Future, handle it like a Future<Void>.
-                if (invocation.getFutureCB() != null) {
-                    final Future futureCB = invocation.getFutureCB(); // caller's future
-                    final CompletableFuture<Object> invokeResult = (CompletableFuture<Object>)invoke;  // the future returned sync from call
-                    if(invokeResult != null)
-                        invokeResult.then((Signal<Object>)futureCB::complete);
-                }
+            // Handle any attached Futures.
+            // If the invocation returns null instead of a Future, handle it like a Future<Void>.
+            if (invocation.getFutureCB() != null) {
+                final Future futureCB = invocation.getFutureCB(); // caller's future
+                final CompletableFuture<Object> invokeResult = (CompletableFuture<Object>)invoke;  // the future returned sync from call
+                if(invokeResult != null)
+                    invokeResult.then((Signal<Object>)futureCB::complete);
+            }
+
+            return true;
+        } catch (Throwable e) {
+
+            // Unwrap the exception thrown by the target.
+            if (e instanceof InvocationTargetException)
+                e = e.getCause();
 
+            // The target no longer exists; assume it's dead.
+            if (e == Exceptions.InternalNucleusStoppedException.INSTANCE) {
+                // FIXME: Sometimes ElasticScheduler causes a ClassCastException when stop() is called from a Signal.
+                Nucleus nucleus = (Nucleus) invocation.getTarget();
+                nucleus.__stopped = true;
+                removeNucleusImmediate(nucleus.getNucleusRef());
                 return true;
-            } catch (Throwable e) {
-
-                // The target no longer exists; assume it's dead.
-                if (e instanceof InvocationTargetException && ((InvocationTargetException) e).getTargetException() == Exceptions.InternalNucleusStoppedException.INSTANCE) {
-                    // FIXME: Sometimes ElasticScheduler causes a ClassCastException when stop() is called from a Signal.
-                    Nucleus nucleus = (Nucleus) invocation.getTarget();
-                    nucleus.__stopped = true;
-                    removeNucleusImmediate(nucleus.getNucleusRef());
-                    return true;
-                }
+            }
 
-                // If the invocation caused an exception, pass it to a Future if possible.
-                if (e instanceof InvocationTargetException)
-                    e = e.getCause();
-                if (invocation.getFutureCB() != null) {
-                    Log.w(TAG, "Unhandled exception in message: " + invocation + ".\nReturned caught exception to Future.\nEnable Dispatcher.DUMP_EXCEPTIONS to dump stacktrace.", e);
-                    if (DUMP_EXCEPTIONS)
-                        e.printStackTrace();
-                    invocation.getFutureCB().complete(null, e);
-                } else {
-                    Log.w(TAG, "Invocation caused an exception: " + invocation + "\nargs: " + Arrays.toString(invocation.getArgs()), e);
+            // If the invocation caused an exception, pass it to a Future if possible.
+            if (invocation.getFutureCB() != null) {
+                Log.w(TAG, "Unhandled exception in message: " + invocation + ".\nReturned caught exception to Future.\nEnable Dispatcher.DUMP_EXCEPTIONS to dump stacktrace.", e);
+                if (DUMP_EXCEPTIONS)
                     e.printStackTrace();
-                }
+                invocation.getFutureCB().complete(null, e);
+            } else {
+                Log.w(TAG, "Invocation caused an exception: " + invocation + "\nargs: " + Arrays.toString(invocation.getArgs()), e);
+                e.printStackTrace();
             }
+        } finally {
+            if (RECYCLE_INVOCATIONS)
+                InvocationPool.release(invocation);
         }
         return false;
     }
 
     /**
-     * Invoke the given RemoteInvocation.
+     * Invoke the given RemoteInvocation. Exceptions thrown by the target are
+     * wrapped in an InvocationTargetException on both the reflective and the
+     * MethodHandle path, so they can be told apart from arguments that do not
+     * match the method.
      *
      * @param invocation the invocation itself
      * @return the result of the invocation
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
+     * @throws Throwable any exception thrown by the target
+     */
+    private Object invoke(RemoteInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        MethodHandle invoker = USE_METHOD_HANDLES ? getInvoker(method) : null;
+        if (invoker == null)
+            return method.invoke(invocation.getTarget(), invocation.getArgs());
+        return invoker.invokeExact(invocation.getTarget(), invocation.getArgs());
+    }
+
+    /**
+     * Returns the cached invoker for the given Method, generating it on first use.
+     * Access checks are performed once here instead of on every invocation.
+     * Like Method.invoke, the invoker wraps exceptions thrown by the method in an
+     * InvocationTargetException, while adapting mismatched arguments fails with
+     * a ClassCastException or NullPointerException (or an IllegalArgumentException
+     * for a wrong argument count) as-is.
+     *
+     * @param method the method to invoke
+     * @return an invoker of type (Object, Object[])Object or null if unavailable
      */
-    private Object invoke(RemoteInvocation invocation) throws IllegalAccessException, InvocationTargetException {
-        return invocation.getMethod().invoke(invocation.getTarget(), invocation.getArgs());
+    /*package*/ static MethodHandle getInvoker(Method method) {
+        MethodHandle invoker = invokers.get(method);
+        if (invoker == null && !Modifier.isStatic(method.getModifiers())) {
+            try {
+                if (!Modifier.isPublic(method.getDeclaringClass().getModifiers()))
+                    method.setAccessible(true);
+                int arity = method.getParameterCount();
+                MethodHandle target = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+                MethodHandle wrap = MethodHandles.dropArguments(WRAP_TARGET_EXCEPTION, 1, target.type().parameterList())
+                        .asType(target.type().insertParameterTypes(0, Throwable.class));
+                invoker = MethodHandles.catchException(target, Throwable.class, wrap)
+                        .asType(MethodType.genericMethodType(arity + 1))
+                        .asSpreader(Object[].class, arity);
+                invokers.put(method, invoker);
+            } catch (IllegalAccessException | SecurityException e) {
+                Log.w(TAG, "Could not generate invoker for " + method + ", using reflection.", e);
+                invokers.put(method, NO_INVOKER);
+                return null;
+            }
+        }
+        return invoker == NO_INVOKER ? null : invoker;
+    }
+
+    @SuppressWarnings("unused")
+    private static Object wrapTargetException(Throwable e) throws InvocationTargetException {
+        throw new InvocationTargetException(e);
     }
 
     /**
@@ -462,13 +875,17 @@ public class Dispatcher extends Thread {
         int res = 0;
         final Nucleus nuclei[] = this.nuclei;
         for (Nucleus aNuclei : nuclei) {
-            MpscConcurrentQueue queue = (MpscConcurrentQueue) aNuclei.__channel.inbox;
-            int load = queue.size() * 100 / queue.getCapacity();
+            Channel channel = aNuclei.__channel;
+            int load = channel.inbox.size() * 100 / channel.capacity;
             if (load > res)
                 res = load;
 
-            queue = (MpscConcurrentQueue) aNuclei.__channel.outbox;
-            load = queue.size() * 100 / queue.getCapacity();
+            load = channel.outbox.size() * 100 / channel.capacity;
+            if (load > res)
+                res = load;
+
+            Queue bulk = channel.bulk;
+            load = bulk != null ? bulk.size() * 100 / channel.capacity : 0;
             if (load > res)
                 res = load;
         }
@@ -500,7 +917,8 @@ public class Dispatcher extends Thread {
     }
 
     /**
-     * Special version of defer() used by Future.
+     * Special version of defer() used by Future. Note that this recursively
+     * processes the messages of all Nuclei of this Dispatcher while waiting.
      *
      * @param until
      * @param future
@@ -523,6 +941,163 @@ public class Dispatcher extends Thread {
         this.__stack.remove(this.__stack.size() - 1);
     }
 
+    /**
+     * Waits for a Future awaited by the Nucleus currently being processed,
+     * without processing any other messages of that Nucleus than its callbacks,
+     * so its mailbox order is kept and nothing is dispatched recursively. Since the
+     * callback lane also carries signalPriority calls, the wait continues as defer2()
+     * once such a call is next in line, as it would block the callbacks behind it. If the
+     * wait is not short, the other Nuclei of this Dispatcher are isolated onto
+     * another Dispatcher, so they can keep running (and complete the Future); if
+     * the Scheduler cannot isolate them, the wait continues as defer2() instead.
+     * If a Nucleus (and not an outside thread) then has a message waiting for the
+     * suspended one, the Future may depend on it (i.e. self().x().await(), or a peer
+     * calling back into it), so the wait continues as defer2() to process it.
+     *
+     * Falls back to defer2() if SUSPEND_ON_AWAIT is disabled.
+     *
+     * @param until the time to time out at, or 0
+     * @param future the Future to wait for
+     */
+    public void suspend(long until, CompletableFuture future) {
+        final Nucleus nucleus = Nucleus.sender.get();
+        if (!SUSPEND_ON_AWAIT || nucleus == null || nucleus.__dispatcher != this) {
+            defer2(until, future);
+            return;
+        }
+
+        final Nucleus sender = currentSender;
+        final RemoteRegistry connection = currentConnection;
+        final Channel channel = nucleus.__channel;
+        final Queue callbacks = channel.outbox;
+        int idleCount = 0;
+        this.__stack.add(future);
+        try {
+            while (!future.isComplete()) {
+                RemoteInvocation invocation = null;
+
+                // Callbacks drained into the current batch are older than the queued ones.
+                if (batchChannel == channel && batchIndex < batchSize) {
+                    if (batch[batchIndex].isCallback()) {
+                        invocation = nextBatched();
+                    } else if (hasBatchedCallback()) {
+                        defer2(until, future);
+                        break;
+                    }
+                }
+                if (invocation == null) {
+                    RemoteInvocation head = (RemoteInvocation) callbacks.peek();
+                    if (head != null && !head.isCallback()) {
+                        defer2(until, future);
+                        break;
+                    }
+                    if (head != null)
+                        invocation = (RemoteInvocation) callbacks.poll();
+                }
+                if (invocation != null) {
+                    dispatch(invocation);
+                    idleCount = 0;
+                    continue;
+                }
+
+                idleCount++;
+
+                // If the other Nuclei can't be moved away, keep processing them.
+                if (idleCount == ISOLATE_AFTER_EMPTY_POLLS && nuclei.length > 1 &&
+                        !scheduler.tryIsolate(this, nucleus.getNucleusRef())) {
+                    defer2(until, future);
+                    break;
+                }
+                if (idleCount % ISOLATE_AFTER_EMPTY_POLLS == 0 && hasDependentMessages(nucleus)) {
+                    defer2(until, future);
+                    break;
+                }
+                scheduler.pollDelay(idleCount);
+
+                if (until != 0 && System.currentTimeMillis() > until) {
+                    future.timedOut(CompletableFuture.Timeout.INSTANCE);
+                    break;
+                }
+            }
+        } finally {
+            this.__stack.remove(this.__stack.size() - 1);
+
+            // Restore the context of the suspended message.
+            if (currentSender != sender) {
+                Nucleus.sender.set(sender);
+                currentSender = sender;
+            }
+            if (currentConnection != connection) {
+                Nucleus.connection.set(connection);
+                currentConnection = connection;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a callback is left in the current batch.
+     *
+     * @return whether the rest of the batch holds a callback
+     */
+    private boolean hasBatchedCallback() {
+        for (int i = batchIndex; i < batchSize; i++)
+            if (batch[i].isCallback())
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns whether the given Nucleus has messages other than callbacks waiting
+     * that were sent by a Nucleus, either in its lanes or in the current batch.
+     * Only the first DEPENDENT_SCAN_LIMIT messages of each lane are inspected.
+     *
+     * @param nucleus the Nucleus to check
+     * @return whether such messages are waiting
+     */
+    private boolean hasDependentMessages(Nucleus nucleus) {
+        Channel channel = nucleus.__channel;
+        if (batchChannel == channel) {
+            for (int i = batchIndex; i < batchSize; i++)
+                if (isDependent(batch[i], nucleus))
+                    return true;
+        }
+        return hasDependentMessages(channel.control, nucleus) || hasDependentMessages(channel.inbox, nucleus) ||
+                hasDependentMessages(channel.bulk, nucleus);
+    }
+
+    /**
+     * Returns whether the given lane has a message sent by a Nucleus, assuming
+     * so if there are more than DEPENDENT_SCAN_LIMIT messages to inspect.
+     *
+     * @param lane the lane to check, or null
+     * @param nucleus the Nucleus owning the lane
+     * @return whether such a message is (or may be) waiting
+     */
+    private static boolean hasDependentMessages(Queue lane, Nucleus nucleus) {
+        if (lane == null || lane.isEmpty())
+            return false;
+        int scanned = 0;
+        for (Object o : lane) {
+            if (++scanned > DEPENDENT_SCAN_LIMIT || isDependent((RemoteInvocation) o, nucleus))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given message was sent by another Nucleus or by the
+     * Nucleus itself. Calls relayed through its own proxy (remote calls to a
+     * published proxy) carry the proxy as sender and do not count.
+     *
+     * @param invocation the message to check
+     * @param nucleus the receiving Nucleus
+     * @return whether the message was sent by a Nucleus
+     */
+    private static boolean isDependent(RemoteInvocation invocation, Nucleus nucleus) {
+        Nucleus sender = invocation.getSendingNucleus();
+        return !invocation.isCallback() && sender != null && sender != nucleus.__self;
+    }
+
     /**
      * Returns the accumulated queue sizes of all Nuclei.
      *
@@ -546,8 +1121,7 @@ public class Dispatcher extends Thread {
         int res = 0;
         final Nucleus nuclei[] = this.nuclei;
         for (Nucleus a : nuclei) {
-            res += a.__channel.inbox.size();
-            res += a.__channel.outbox.size();
+            res += a.__channel.getQSizes();
         }
         return res;
     }
@@ -566,6 +1140,7 @@ public class Dispatcher extends Thread {
      */
     public void shutDown() {
         shutDown = true;
+        wakeUp();
     }
 
     /**
@@ -575,7 +1150,7 @@ public class Dispatcher extends Thread {
      */
     public boolean isEmpty() {
         for (Nucleus n : nuclei) {
-            if (!n.__channel.inbox.isEmpty() || !n.__channel.outbox.isEmpty())
+            if (!n.__channel.isEmpty())
                 return false;
         }
         return true;
@@ -23,6 +23,7 @@
 package com.avaidyam.binoculars.scheduler;
 
 import com.avaidyam.binoculars.Exceptions;
+import com.avaidyam.binoculars.Lane;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Future;
@@ -57,7 +58,7 @@ public class ElasticScheduler implements Scheduler {
     public static boolean DEBUG_SCHEDULING = false;
 
     public static int RECURSE_ON_BLOCK_THRESHOLD = 2;
-    public static Timer delayedCalls = new Timer();
+    public static TimerWheel delayedCalls = new TimerWheel("binoculars-timer");
     final Dispatcher threads[];
     final Object balanceLock = new Object();
     protected SchedulingStrategy schedulingStrategy = new SchedulingStrategy();
@@ -102,7 +103,7 @@ public class ElasticScheduler implements Scheduler {
         } else
             fut = null;
         Nucleus targetNucleus = e.getTargetNucleus();
-        put2QueuePolling(e.isCallback() ? targetNucleus.__channel.outbox : targetNucleus.__channel.inbox, false, e, targetNucleus);
+        put2QueuePolling(e.isCallback() ? targetNucleus.__channel.outbox : targetNucleus.__channel.getLane(Lane.of(e.getMethod())), false, e, targetNucleus);
         return fut;
     }
 
@@ -116,6 +117,8 @@ public class ElasticScheduler implements Scheduler {
         int count = 0;
         boolean warningPrinted = false;
         while (!q.offer(o)) {
+            if (count == 0 && receiver instanceof Nucleus && ((Nucleus) receiver).__channel.rejectOverflow(q, o))
+                return;
             pollDelay(count++);
             if (count > RECURSE_ON_BLOCK_THRESHOLD && isCBQ) {
                 // thread is blocked, try to schedule other actors on this dispatcher (only calbacks+futures!)
@@ -206,6 +209,11 @@ public class ElasticScheduler implements Scheduler {
         if (warningPrinted && DEBUG_SCHEDULING) {
             Log.w(this.toString(), "Thread " + Thread.currentThread().getName() + " continued");
         }
+        if (Dispatcher.SIGNAL_WAKEUP && receiver instanceof Nucleus) {
+            Dispatcher dispatcher = ((Nucleus) receiver).__dispatcher;
+            if (dispatcher != null)
+                dispatcher.wakeUp();
+        }
     }
 
     @Override
@@ -214,8 +222,13 @@ public class ElasticScheduler implements Scheduler {
         // here sender + receiver are known in a ST context
         Nucleus nucleus = receiver.getNucleus();
         Method method = nucleus.__getCachedMethod(methodName, nucleus);
+        return enqueueCall(reg, sendingNucleus, receiver, method, args, isCB);
+    }
+
+    @Override
+    public Object enqueueCall(RemoteRegistry reg, Nucleus sendingNucleus, Nucleus receiver, Method method, Object args[], boolean isCB) {
+        Nucleus nucleus = receiver.getNucleus();
 
-        int count = 0;
         // scan for callbacks in arguments ..
         for (int i = 0; i < args.length; i++) {
             Object arg = args[i];
@@ -224,7 +237,7 @@ public class ElasticScheduler implements Scheduler {
             }
         }
 
-        RemoteInvocation<?> e = new RemoteInvocation<>(
+        RemoteInvocation<?> e = InvocationPool.obtain(
                 nucleus, // target
                 method,
                 args,
@@ -283,13 +296,8 @@ public class ElasticScheduler implements Scheduler {
     }
 
     @Override
-    public void delayedCall(long millis, final Runnable toRun) {
-        delayedCalls.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                toRun.run();
-            }
-        }, millis);
+    public TimerWheel.Handle delayedCall(long millis, final Runnable toRun) {
+        return delayedCalls.schedule(millis, toRun);
     }
 
     @Override
@@ -403,7 +411,7 @@ public class ElasticScheduler implements Scheduler {
     }
 
     // fixme: use currentthread if this is a precondition anyway
-    public void tryIsolate(Dispatcher dispatcher, Nucleus refToExclude /*implicitely indicates unblock*/) {
+    public boolean tryIsolate(Dispatcher dispatcher, Nucleus refToExclude /*implicitely indicates unblock*/) {
         if (dispatcher != Thread.currentThread())
             throw new RuntimeException("bad error");
         synchronized (balanceLock) {
@@ -443,7 +451,8 @@ public class ElasticScheduler implements Scheduler {
                 if (refToExclude != null && refToExclude.getNucleusRef() != refToExclude) {
                     throw new RuntimeException("this also");
                 }
-                if (nucleus != refToExclude) {
+                // isolating may happen in the middle of a batch (i.e. while suspended)
+                if (nucleus != refToExclude && !dispatcher.hasPendingBatch(nucleus)) {
                     dispatcher.removeNucleusImmediate(nucleus);
                     minLoadThread.addNucleus(nucleus);
                 }
@@ -451,6 +460,7 @@ public class ElasticScheduler implements Scheduler {
                     Log.i(this.toString(), "move for unblock " + nucleus.__channel.getQSizes() + " myload " + dispatcher.getAccumulatedQSizes() + " actors " + qList.length);
             }
         }
+        return true;
     }
 
 	@Override
@@ -520,7 +530,7 @@ public class ElasticScheduler implements Scheduler {
             if (method.getDeclaringClass() == Object.class)
                 return method.invoke(proxy, args); // toString, hashCode etc. invoke sync (DANGER if hashcode accesses mutable local state)
             if (target != null) {
-                RemoteInvocation ce = new RemoteInvocation(target, method, args, Nucleus.sender.get(), targetNucleus, true);
+                RemoteInvocation ce = InvocationPool.obtain(target, method, args, Nucleus.sender.get(), targetNucleus, true);
                 put2QueuePolling(targetNucleus.__channel.outbox, true, ce, targetNucleus);
             }
             return null;
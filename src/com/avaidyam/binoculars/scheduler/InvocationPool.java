@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.scheduler;
+
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.remoting.RemoteInvocation;
+import external.jaq.mpsc.MpscConcurrentQueue;
+
+import java.lang.reflect.Method;
+
+/**
+ * A pool of recycled RemoteInvocation envelopes owned by a single Dispatcher.
+ *
+ * Only the owning Dispatcher takes envelopes from its pool, while any Dispatcher
+ * that finishes processing an envelope hands it back to the pool it came from.
+ * Envelopes created outside of a Dispatcher thread are never pooled, and an
+ * envelope that is never returned (i.e. one forwarded to a remote connection)
+ * is simply left to the garbage collector.
+ *
+ * Recycling is only active when Dispatcher.RECYCLE_INVOCATIONS is enabled.
+ */
+public class InvocationPool {
+
+	/**
+	 * The maximum number of idle envelopes kept by each Dispatcher.
+	 */
+    public static int POOL_SIZE = 1024;
+
+	/**
+	 * Poisons released envelopes instead of reusing them, so any access to an
+	 * envelope after it has been released throws an IllegalStateException.
+	 */
+    public static boolean DEBUG_RECYCLING = false;
+
+	/**
+	 * The idle envelopes of this pool; single consumer is the owning Dispatcher.
+	 */
+    private final MpscConcurrentQueue<RemoteInvocation> free = new MpscConcurrentQueue<>(POOL_SIZE);
+
+    /**
+     * Returns a RemoteInvocation for the given message, taken from the pool of the
+     * current Dispatcher if recycling is enabled and one is available.
+     *
+     * @param target the target of the message
+     * @param method the method to invoke
+     * @param args the arguments of the invocation
+     * @param sender the sending Nucleus
+     * @param targetNucleus the Nucleus whose queue the message is put on
+     * @param isCB whether the message is a callback
+     * @return a RemoteInvocation ready to be enqueued
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RemoteInvocation<T> obtain(T target, Method method, Object[] args, Nucleus sender, Nucleus targetNucleus, boolean isCB) {
+        Thread current = Thread.currentThread();
+        if (!Dispatcher.RECYCLE_INVOCATIONS || !(current instanceof Dispatcher))
+            return new RemoteInvocation<>(target, method, args, sender, targetNucleus, isCB);
+
+        InvocationPool pool = ((Dispatcher) current).invocationPool;
+        RemoteInvocation<T> invocation = pool.free.poll();
+        if (invocation == null)
+            invocation = new RemoteInvocation<>(target, method, args, sender, targetNucleus, isCB);
+        else invocation.reuse(target, method, args, sender, targetNucleus, isCB);
+        invocation.setPool(pool);
+        return invocation;
+    }
+
+    /**
+     * Returns the given RemoteInvocation to the pool it was taken from. The
+     * envelope must not be touched by the caller afterwards.
+     *
+     * @param invocation the RemoteInvocation that has been processed
+     */
+    public static void release(RemoteInvocation invocation) {
+        InvocationPool pool = invocation.getPool();
+        invocation.release();
+
+        // Poisoned envelopes are never handed out again; a full pool drops them.
+        if (pool != null && !DEBUG_RECYCLING)
+            pool.free.offer(invocation);
+    }
+
+    /**
+     * Returns the number of idle envelopes in this pool.
+     *
+     * @return the number of idle envelopes
+     */
+    public int size() {
+        return free.size();
+    }
+}
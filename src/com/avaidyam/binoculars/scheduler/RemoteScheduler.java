@@ -24,11 +24,15 @@ package com.avaidyam.binoculars.scheduler;
 
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.remoting.RemoteConnection;
+import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
 
+import java.util.Queue;
 import java.util.concurrent.Callable;
 
 /**
- *
+ * Schedules remote nuclei references. Their queues are not polled by a thread of their own,
+ * but by the send loop of their RemoteRegistry, which is signalled for each queued message.
  */
 public class RemoteScheduler extends ElasticScheduler {
 
@@ -56,7 +60,17 @@ public class RemoteScheduler extends ElasticScheduler {
     }
 
 	@Override
-	public void delayedCall(long millis, Runnable toRun) {
+	public void put2QueuePolling(Queue q, boolean isCBQ, Object o, Object receiver) {
+		super.put2QueuePolling(q, isCBQ, o, receiver);
+		if ( receiver instanceof Nucleus ) {
+			RemoteConnection connection = ((Nucleus) receiver).getNucleusRef().__clientConnection;
+			if ( connection instanceof RemoteRegistry )
+				((RemoteRegistry) connection).signalSend();
+		}
+	}
+
+	@Override
+	public TimerWheel.Handle delayedCall(long millis, Runnable toRun) {
 		throw new RuntimeException("cannot be used on a remote reference (no thread)");
 	}
 
@@ -27,6 +27,7 @@ import com.avaidyam.binoculars.future.Signal;
 import com.avaidyam.binoculars.remoting.base.RemoteRegistry;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 
@@ -46,12 +47,25 @@ public interface Scheduler {
      */
     <T> T inThread(Nucleus nucleus, T callback);
 
-    void delayedCall(long millis, Runnable toRun);
+    /**
+     * Runs the given Runnable once after a delay, on the scheduler's TimerWheel.
+     *
+     * @param millis the delay in milliseconds
+     * @param toRun the Runnable to run
+     * @return a Handle which may be used to cancel the call
+     */
+    TimerWheel.Handle delayedCall(long millis, Runnable toRun);
 
     <T> void runBlockingCall(Nucleus emitter, Callable<T> toCall, Signal<T> resultHandler);
 
     Object enqueueCall(RemoteRegistry registry, Nucleus sendingNucleus, Nucleus receiver, String methodName, Object args[], boolean isCB);
 
+    /**
+     * Same as enqueueCall(..., String methodName, ...) but skips the method lookup,
+     * as the caller (i.e. a generated proxy) has already resolved it.
+     */
+    Object enqueueCall(RemoteRegistry registry, Nucleus sendingNucleus, Nucleus receiver, Method method, Object args[], boolean isCB);
+
 
 
 
@@ -89,8 +103,13 @@ public interface Scheduler {
     // FIXME: REMOVE
     void tryStopThread(Dispatcher dispatcher);
 
+    /**
+     * Moves all Nuclei except the given one off the given Dispatcher.
+     *
+     * @return false if this Scheduler cannot move Nuclei between Dispatchers
+     */
     // FIXME: REMOVE
-    void tryIsolate(Dispatcher dp, Nucleus nucleusRef);
+    boolean tryIsolate(Dispatcher dp, Nucleus nucleusRef);
 
     // FIXME: REMOVE
     int getNumNuclei();
@@ -23,6 +23,7 @@
 package com.avaidyam.binoculars.scheduler;
 
 import com.avaidyam.binoculars.Exceptions;
+import com.avaidyam.binoculars.Lane;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Future;
@@ -36,7 +37,6 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Queue;
-import java.util.TimerTask;
 import java.util.concurrent.*;
 
 /**
@@ -106,6 +106,8 @@ public class SimpleScheduler implements Scheduler {
 		long sleepStart = 0;
 		boolean warningPrinted = false;
 		while(!q.offer(o)) {
+			if(count == 0 && receiver instanceof Nucleus && ((Nucleus) receiver).__channel.rejectOverflow(q, o))
+				return;
 			pollDelay(count++);
 			if(schedulingStrategy.isYielding(count)) {
 				Nucleus sendingNucleus = Nucleus.sender.get();
@@ -147,6 +149,11 @@ public class SimpleScheduler implements Scheduler {
 				}
 			}
 		}
+		if(Dispatcher.SIGNAL_WAKEUP && receiver instanceof Nucleus) {
+			Dispatcher dispatcher = ((Nucleus) receiver).__dispatcher;
+			if(dispatcher != null)
+				dispatcher.wakeUp();
+		}
 	}
 	
 	public Future put2QueuePolling(RemoteInvocation e) {
@@ -157,7 +164,7 @@ public class SimpleScheduler implements Scheduler {
 		} else
 			fut = null;
 		Nucleus targetNucleus = e.getTargetNucleus();
-		put2QueuePolling(e.isCallback() ? targetNucleus.__channel.outbox : targetNucleus.__channel.inbox, false, e, targetNucleus);
+		put2QueuePolling(e.isCallback() ? targetNucleus.__channel.outbox : targetNucleus.__channel.getLane(Lane.of(e.getMethod())), false, e, targetNucleus);
 		return fut;
 	}
 	
@@ -168,6 +175,13 @@ public class SimpleScheduler implements Scheduler {
 		
 		if(method == null)
 			throw new RuntimeException("unknown method " + methodName + " on " + nucleus);
+		return enqueueCall(reg, sendingNucleus, receiver, method, args, isCB);
+	}
+	
+	@Override
+	public Object enqueueCall(RemoteRegistry reg, Nucleus sendingNucleus, Nucleus receiver, Method method, Object[] args, boolean isCB) {
+		Nucleus nucleus = receiver.getNucleus();
+		
 		// scan for callbacks in arguments ..
 		for(int i = 0; i < args.length; i++) {
 			Object arg = args[i];
@@ -176,7 +190,7 @@ public class SimpleScheduler implements Scheduler {
 			}
 		}
 		
-		RemoteInvocation e = new RemoteInvocation(
+		RemoteInvocation e = InvocationPool.obtain(
 				nucleus, // target
 				method,
 				args,
@@ -217,7 +231,7 @@ public class SimpleScheduler implements Scheduler {
 			if(method.getDeclaringClass() == Object.class)
 				return method.invoke(proxy, args); // toString, hashCode etc. invoke sync (DANGER if hashcode accesses mutable local state)
 			if(target != null) {
-				RemoteInvocation ce = new RemoteInvocation(target, method, args, Nucleus.sender.get(), targetNucleus, true);
+				RemoteInvocation ce = InvocationPool.obtain(target, method, args, Nucleus.sender.get(), targetNucleus, true);
 				put2QueuePolling(targetNucleus.__channel.outbox, true, ce, targetNucleus);
 			}
 			return null;
@@ -240,14 +254,8 @@ public class SimpleScheduler implements Scheduler {
 	}
 	
 	@Override
-	public void delayedCall(long millis, Runnable toRun) {
-		Nucleus.delayedCalls.schedule(new TimerTask() {
-			@Override
-			public void run() {
-				toRun.run();
-			}
-		}, millis);
-		
+	public TimerWheel.Handle delayedCall(long millis, Runnable toRun) {
+		return Nucleus.delayedCalls.schedule(millis, toRun);
 	}
 	
 	@Override
@@ -282,8 +290,8 @@ public class SimpleScheduler implements Scheduler {
 	}
 	
 	@Override
-	public void tryIsolate(Dispatcher dp, Nucleus nucleusRef) {
-		
+	public boolean tryIsolate(Dispatcher dp, Nucleus nucleusRef) {
+		return false;
 	}
 	
 	@Override
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.scheduler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * A scheduler running each Nucleus on its own Dispatcher thread, for Nuclei that block.
+ *
+ * A Nucleus calling Future.await() or a blocking API (i.e. Process.waitFor()) only stalls
+ * its own thread instead of every other Nucleus sharing its Dispatcher, and blocking calls
+ * made through Nucleus.exec() are run on an unbounded pool instead of a fixed one. Threads
+ * back off to long parks when idle, so large numbers of mostly-waiting Nuclei (i.e. job
+ * tracking) stay cheap. Nuclei are never moved between threads, so no rebalancing takes place.
+ */
+public class ThreadPerNucleusScheduler extends ElasticScheduler {
+
+	/**
+	 * The stack size requested for each Dispatcher thread, or 0 for the platform default.
+	 * Lowering it allows more threads, but deep Future chains may then overflow the stack.
+	 */
+    public static long STACK_SIZE = 0;
+
+	/**
+	 * The duration an idle Dispatcher parks for between polls of its Nucleus.
+	 * Enabling Dispatcher.SIGNAL_WAKEUP avoids these periodic polls altogether.
+	 */
+    public static int IDLE_PARK_NANOS = 10 * 1000 * 1000;
+
+	/**
+	 * The live Dispatchers of this scheduler, one per Nucleus.
+	 */
+    private final Set<Dispatcher> dispatchers = ConcurrentHashMap.newKeySet();
+
+    public ThreadPerNucleusScheduler() {
+        this(DEFQSIZE);
+    }
+
+    public ThreadPerNucleusScheduler(int defQSize) {
+        super(1, defQSize);
+        schedulingStrategy = new SchedulingStrategy(10, 10, 10);
+        schedulingStrategy.setNanosToPark(IDLE_PARK_NANOS);
+        exec.shutdown();
+        exec = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Always starts a new Dispatcher for the Nucleus about to be created.
+     */
+    @Override
+    public Dispatcher assignDispatcher(int minLoadPerc) {
+        Dispatcher dispatcher = createDispatcherThread();
+        dispatchers.add(dispatcher);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    @Override
+    protected Dispatcher createDispatcherThread() {
+        return new Dispatcher(this, STACK_SIZE);
+    }
+
+    @Override
+    public void rebalance(Dispatcher dispatcher) {}
+
+    /**
+     * An idle Nucleus keeps its thread; the thread ends once the Nucleus is stopped.
+     */
+    @Override
+    public void tryStopThread(Dispatcher dispatcher) {}
+
+    @Override
+    public void threadStopped(Dispatcher th) {
+        dispatchers.remove(th);
+    }
+
+    @Override
+    public void terminateIfIdle() {
+        for (Dispatcher dispatcher : dispatchers)
+            dispatcher.setAutoShutdown(true);
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return dispatchers.size();
+    }
+
+    @Override
+    public int getNumNuclei() {
+        int l = 0;
+        for (Dispatcher dispatcher : dispatchers)
+            l += dispatcher.getNuclei().length;
+        return l;
+    }
+}
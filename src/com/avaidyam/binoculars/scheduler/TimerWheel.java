@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.scheduler;
+
+import com.avaidyam.binoculars.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed hierarchical timer wheel used for delayed calls and timeouts.
+ *
+ * Scheduling and cancelling are O(1) and lock-free for the caller: new and
+ * cancelled timeouts are handed to the wheel's own thread through concurrent
+ * queues, and only that thread ever touches the wheel itself. Cancelled
+ * timeouts are unlinked right away instead of lingering until their deadline.
+ *
+ * The wheel has LEVELS levels of 2^WHEEL_BITS slots; each level covers
+ * 2^WHEEL_BITS times the span of the one below it, and timeouts cascade down
+ * a level whenever the level below wraps around. Timeouts fire at most one
+ * tick late, on the wheel's thread, so tasks should be short (i.e. enqueue a
+ * message or complete a Future) rather than do any real work.
+ */
+public class TimerWheel {
+
+    private static final String TAG = "TimerWheel";
+
+	/**
+	 * The default duration of a tick in milliseconds. This is also the
+	 * resolution of timeouts scheduled on the wheel.
+	 */
+    public static long TICK_MILLIS = 1;
+
+	/**
+	 * The number of slots in each level of the wheel, as a power of two.
+	 */
+    public static final int WHEEL_BITS = 6;
+
+	/**
+	 * The number of levels of the wheel. Timeouts beyond the span of all
+	 * levels are parked in the last level and re-placed when they come up.
+	 */
+    public static final int LEVELS = 4;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final long MAX_SPAN = 1L << (WHEEL_BITS * LEVELS);
+
+    private final Handle[] slots = new Handle[LEVELS * WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Handle> scheduled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Handle> cancelled = new ConcurrentLinkedQueue<>();
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+    private final Thread thread;
+
+    private volatile boolean idle;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a new TimerWheel with the default tick duration.
+     *
+     * @param name the name of the wheel's thread
+     */
+    public TimerWheel(String name) {
+        this(name, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new TimerWheel.
+     *
+     * @param name the name of the wheel's thread
+     * @param tick the duration of a tick
+     * @param unit the unit of the tick duration
+     */
+    public TimerWheel(String name, long tick, TimeUnit unit) {
+        this.tickNanos = Math.max(1, unit.toNanos(tick));
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param millis the delay in milliseconds
+     * @param task the task to run
+     * @return a Handle which may be used to cancel the task
+     */
+    public Handle schedule(long millis, Runnable task) {
+        return schedule(millis, TimeUnit.MILLISECONDS, task);
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @param task the task to run
+     * @return a Handle which may be used to cancel the task
+     */
+    public Handle schedule(long delay, TimeUnit unit, Runnable task) {
+        // round up, so that a task never runs early
+        long deadline = (System.nanoTime() - origin + unit.toNanos(Math.max(0, delay)) + tickNanos - 1) / tickNanos;
+        Handle handle = new Handle(this, task, deadline);
+        scheduled.offer(handle);
+        if (idle)
+            LockSupport.unpark(thread);
+        return handle;
+    }
+
+    /**
+     * Returns the number of timeouts currently held by the wheel. This is
+     * only an estimate, as it does not include timeouts still in transit.
+     *
+     * @return the number of pending timeouts
+     */
+    public int size() {
+        return size;
+    }
+
+    private long now() {
+        return (System.nanoTime() - origin) / tickNanos;
+    }
+
+    private void run() {
+        currentTick = now();
+        while (true) {
+            try {
+                if (size == 0 && scheduled.isEmpty()) {
+                    idle = true;
+                    if (scheduled.isEmpty())
+                        LockSupport.park(this);
+                    idle = false;
+                    currentTick = now();
+                    continue;
+                }
+
+                // the current tick has already been processed, so only place
+                // new timeouts once the wheel has moved on to the next one
+                long target = now();
+                while (currentTick < target) {
+                    currentTick++;
+                    transfer();
+                    advance();
+                }
+                long sleep = (currentTick + 1) * tickNanos - (System.nanoTime() - origin);
+                if (sleep > 0)
+                    LockSupport.parkNanos(this, sleep);
+            } catch (Throwable t) {
+                Log.w(TAG, "Exception in timer wheel loop: ", t);
+            }
+        }
+    }
+
+    // moves newly scheduled and cancelled timeouts into and out of the wheel
+    private void transfer() {
+        Handle handle;
+        while ((handle = cancelled.poll()) != null) {
+            if (handle.index >= 0) {
+                unlink(handle);
+                size--;
+            }
+        }
+        while ((handle = scheduled.poll()) != null) {
+            if (handle.state == Handle.PENDING) {
+                place(handle);
+                size++;
+            }
+        }
+    }
+
+    // cascades the levels that wrapped around and expires the current slot
+    private void advance() {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0)
+                continue;
+            int index = level * WHEEL_SIZE + (int)((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Handle handle = slots[index];
+            slots[index] = null;
+            while (handle != null) {
+                Handle next = handle.next;
+                place(handle);
+                handle = next;
+            }
+        }
+
+        int index = (int)(currentTick & WHEEL_MASK);
+        Handle handle = slots[index];
+        slots[index] = null;
+        while (handle != null) {
+            Handle next = handle.next;
+            handle.index = -1;
+            handle.next = handle.prev = null;
+            size--;
+            handle.expire();
+            handle = next;
+        }
+    }
+
+    private void place(Handle handle) {
+        long delta = Math.min(handle.deadline - currentTick, MAX_SPAN - 1);
+        long at = currentTick + Math.max(0, delta);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1))))
+            level++;
+
+        int index = level * WHEEL_SIZE + (int)((at >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        handle.index = index;
+        handle.prev = null;
+        handle.next = slots[index];
+        if (handle.next != null)
+            handle.next.prev = handle;
+        slots[index] = handle;
+    }
+
+    private void unlink(Handle handle) {
+        if (handle.prev != null)
+            handle.prev.next = handle.next;
+        else slots[handle.index] = handle.next;
+        if (handle.next != null)
+            handle.next.prev = handle.prev;
+        handle.index = -1;
+        handle.next = handle.prev = null;
+    }
+
+    /**
+     * A timeout scheduled on a TimerWheel.
+     */
+    public static final class Handle {
+
+        static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Handle> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Handle.class, "state");
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        volatile int state = PENDING;
+
+        // owned by the wheel's thread
+        private int index = -1;
+        private Handle prev, next;
+
+        Handle(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return true if the task was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED))
+                return false;
+            wheel.cancelled.offer(this);
+            return true;
+        }
+
+        /**
+         * @return true if the task was cancelled
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * @return true if the task has run (or is running)
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, PENDING, EXPIRED))
+                return;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Log.w(TAG, "Exception in delayed task " + task + ": ", t);
+            }
+        }
+    }
+}
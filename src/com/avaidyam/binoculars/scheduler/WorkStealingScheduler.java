@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 Aditya Vaidyam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.avaidyam.binoculars.scheduler;
+
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A scheduler where idle Dispatchers steal whole Nuclei from busy ones, instead of
+ * rebalancing when a queue passes Dispatcher.QUEUE_PERCENTAGE_TRIGGERING_REBALANCE.
+ *
+ * A Nucleus' mailbox may only ever be polled by a single Dispatcher, so a thief never
+ * takes a Nucleus itself: an idle Dispatcher registers on a lock-free deque of thieves,
+ * and a busy Dispatcher hands one of its backlogged Nuclei over between two messages,
+ * from its own thread. Messages still queued for that Nucleus are processed in order
+ * by the thief. No lock is taken on either side of the exchange.
+ */
+public class WorkStealingScheduler extends ElasticScheduler {
+
+	/**
+	 * The number of consecutive empty polls before an idle Dispatcher asks for work.
+	 */
+    public static int STEAL_AFTER_EMPTY_POLLS = 16;
+
+	/**
+	 * The number of messages a busy Dispatcher processes between checks for thieves.
+	 */
+    public static int STEAL_CHECK_INTERVAL = 64;
+
+	/**
+	 * The idle Dispatchers waiting to be handed a Nucleus.
+	 */
+    final ConcurrentLinkedDeque<StealingDispatcher> thieves = new ConcurrentLinkedDeque<>();
+
+    public WorkStealingScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public WorkStealingScheduler(int maxThreads) {
+        super(maxThreads);
+    }
+
+    public WorkStealingScheduler(int maxThreads, int defQSize) {
+        super(maxThreads, defQSize);
+    }
+
+    /**
+     * Starts a new Dispatcher as long as there is room for one, so that there is
+     * always someone around to steal work. Otherwise, the Dispatcher holding the
+     * fewest Nuclei is returned.
+     */
+    @Override
+    public Dispatcher assignDispatcher(int minLoadPerc) {
+        synchronized (balanceLock) {
+            Dispatcher minThread = null;
+            for (int i = 0; i < threads.length; i++) {
+                if (threads[i] == null) {
+                    threads[i] = createDispatcherThread();
+                    threads[i].start();
+                    return threads[i];
+                }
+                if (minThread == null || threads[i].getNuclei().length < minThread.getNuclei().length)
+                    minThread = threads[i];
+            }
+            return minThread;
+        }
+    }
+
+    /**
+     * Load is spread by stealing, so queue-size triggered rebalancing is not used.
+     */
+    @Override
+    public void rebalance(Dispatcher dispatcher) {}
+
+    @Override
+    protected Dispatcher createDispatcherThread() {
+        return new StealingDispatcher(this);
+    }
+
+    /**
+     * Returns whether any Dispatcher of this scheduler still holds a Nucleus.
+     *
+     * @return whether any Nucleus is scheduled
+     */
+    boolean hasNuclei() {
+        for (int i = 0; i < threads.length; i++) {
+            Dispatcher thread = threads[i];
+            if (thread != null && (thread.getNuclei().length > 0 || thread.toAdd.peek() != null))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * A Dispatcher that asks for work when idle and gives work away when busy.
+     */
+    static class StealingDispatcher extends Dispatcher {
+
+        private final WorkStealingScheduler scheduler;
+
+        /**
+         * Is this Dispatcher registered as a thief? Cleared by the Dispatcher handing it work.
+         */
+        volatile boolean stealing = false;
+
+        /**
+         * The number of messages processed since the last check for thieves.
+         */
+        private int sinceLastCheck = 0;
+
+        StealingDispatcher(WorkStealingScheduler scheduler) {
+            super(scheduler);
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        protected void afterPoll() {
+            if (++sinceLastCheck < STEAL_CHECK_INTERVAL)
+                return;
+            sinceLastCheck = 0;
+            if (nuclei.length > 1 && __stack.isEmpty() && scheduler.thieves.peekFirst() != null)
+                handOff();
+        }
+
+        @Override
+        protected boolean whenIdle(int emptyCount) {
+            if (toAdd.peek() != null) {
+                schedulePendingAdds();
+                return true;
+            }
+            if (emptyCount >= STEAL_AFTER_EMPTY_POLLS && !stealing && !isShutDown()) {
+                stealing = true;
+                scheduler.thieves.offerLast(this);
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean mayShutDown() {
+            return !scheduler.hasNuclei();
+        }
+
+        /**
+         * Gives the Nucleus with the largest backlog to the first waiting thief, as long
+         * as another backlogged Nucleus remains on this Dispatcher.
+         *
+         * NOTE: This MUST be called from this Dispatcher, between two messages.
+         */
+        private void handOff() {
+            Nucleus victim = null;
+            int backlogged = 0, max = 0;
+            for (Nucleus nucleus : nuclei) {
+                int size = nucleus.__channel.getQSizes();
+                if (size > 0) {
+                    backlogged++;
+                    if (size > max) {
+                        max = size;
+                        victim = nucleus;
+                    }
+                }
+            }
+            if (backlogged < 2)
+                return;
+
+            StealingDispatcher thief;
+            while ((thief = scheduler.thieves.pollFirst()) != null) {
+                thief.stealing = false;
+                if (thief == this || thief.isShutDown() || !thief.isAlive())
+                    continue;
+
+                removeNucleusImmediate(victim);
+                thief.addNucleus(victim);
+                if (ElasticScheduler.DEBUG_SCHEDULING)
+                    Log.i(scheduler.toString(), "steal " + max + " from " + getName() + " to " + thief.getName());
+                return;
+            }
+        }
+    }
+}
@@ -198,6 +198,32 @@ public final class MpscConcurrentQueue<E> extends MpscConcurrentArrayQueueL3Pad<
 		return e;
 	}
 
+	/**
+	 * Polls up to limit elements into batch, starting at batch[offset], publishing
+	 * the new head once for the whole batch. Like poll(), this may only be called
+	 * by the single consumer.
+	 *
+	 * @return the number of elements polled
+	 */
+	public int poll(final E[] batch, final int offset, final int limit) {
+		final long currentHead = head;
+		int count = 0;
+		while (count < limit) {
+			final long elementOffset = elementOffsetInBuffer(currentHead + count);
+			@SuppressWarnings("unchecked")
+			final E e = (E) UnsafeAccess.UNSAFE.getObjectVolatile(buffer, elementOffset);
+			if (null == e) {
+				break;
+			}
+			UnsafeAccess.UNSAFE.putObject(buffer, elementOffset, null);
+			batch[offset + count++] = e;
+		}
+		if (count > 0) {
+			lazySetHead(currentHead + count);
+		}
+		return count;
+	}
+
 	public E remove() {
 		final E e = poll();
 		if (null == e) {
@@ -249,8 +275,42 @@ public final class MpscConcurrentQueue<E> extends MpscConcurrentArrayQueueL3Pad<
 		return false;
 	}
 
+	/**
+	 * Returns a weakly consistent, read-only iterator over the elements between
+	 * the head and the tail at the time of the call. Elements consumed or not yet
+	 * published while iterating are skipped.
+	 */
 	public Iterator<E> iterator() {
-		throw new UnsupportedOperationException();
+		final long limit = getTail();
+		return new Iterator<E>() {
+			private long index = getHeadV();
+			private E next = advance();
+
+			private E advance() {
+				while (index < limit) {
+					final E e = getElement(index++);
+					if (null != e) {
+						return e;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return null != next;
+			}
+
+			@Override
+			public E next() {
+				if (null == next) {
+					throw new NoSuchElementException();
+				}
+				final E e = next;
+				next = advance();
+				return e;
+			}
+		};
 	}
 
 	public Object[] toArray() {
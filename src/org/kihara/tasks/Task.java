@@ -26,10 +26,9 @@ import com.avaidyam.binoculars.future.CompletableFuture;
 import com.avaidyam.binoculars.future.Spore;
 import com.avaidyam.binoculars.Nucleus;
 import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+import com.avaidyam.binoculars.scheduler.TimerWheel;
 
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -412,6 +411,9 @@ public abstract class Task<I, O> extends Spore<I, O> implements Serializable {
     // scheduler reference
     private transient TaskScheduler scheduler;
 
+    // pending timeout, cancelled once the Task reaches a terminal state
+    private transient TimerWheel.Handle timeoutHandle;
+
     // get rid of these?
     private O result;
     private Throwable error;
@@ -559,22 +561,12 @@ public abstract class Task<I, O> extends Spore<I, O> implements Serializable {
                 this.streamError(new CompletableFuture.TimeoutException());
         };
 
-        if (nucleus != null) {
-            try {
-                Method m = nucleus.getClass().getDeclaredMethod("delayed", Long.TYPE, Runnable.class);
-                m.setAccessible(true);
-                m.invoke(nucleus, timeUnit.toMillis(timeout), timeoutHandler);
-                return this;
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                // forward to timer method.
-            }
-        }
-
-        ElasticScheduler.delayedCalls.schedule(new TimerTask() {
-            public void run() {
-                timeoutHandler.run();
-            }
-        }, timeUnit.toMillis(timeout));
+        // time out in the calling nucleus' thread if there is one
+        if (this.timeoutHandle != null)
+            this.timeoutHandle.cancel();
+        this.timeoutHandle = nucleus != null
+                ? nucleus.__scheduler.delayedCall(timeUnit.toMillis(timeout), nucleus.__scheduler.inThread(nucleus.__self, timeoutHandler))
+                : ElasticScheduler.delayedCalls.schedule(timeout, timeUnit, timeoutHandler);
         return this;
     }
 
@@ -689,6 +681,9 @@ public abstract class Task<I, O> extends Spore<I, O> implements Serializable {
     private void registerState(State newState) {
         Objects.requireNonNull(this.scheduler, "TaskScheduler must be bound first!");
         this.scheduler.updateState(this.getTag(), (this.state = newState));
+        if (this.timeoutHandle != null && (newState == State.COMPLETED ||
+                newState == State.FAILED || newState == State.CANCELLED))
+            this.timeoutHandle.cancel();
     }
 
     // nothing can really happen asynchronously without this...
@@ -0,0 +1,89 @@
+package test;
+
+import com.avaidyam.binoculars.future.Signal;
+import com.avaidyam.binoculars.remoting.base.CallbackTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a CallbackTable never resolves stale ids to the callback reusing
+ * their slot, and that ids stay valid once the generation of a slot wraps around.
+ */
+public class CallbackTableTest {
+
+    // the generations of a slot wrap around after this many removals (see CallbackTable.INDEX_BITS)
+    static final int GENERATIONS = 1 << (31 - 20);
+
+    public static void main(String[] args) {
+        staleIds();
+        generationWrap();
+        reap();
+        System.out.println("CallbackTableTest: ok");
+    }
+
+    static void staleIds() {
+        CallbackTable table = new CallbackTable(2);
+        Signal first = (r, e) -> {};
+        Signal second = (r, e) -> {};
+
+        int id = table.add(first);
+        check(id > 0, "stale: id " + id);
+        check(table.get(id) == first, "stale: get");
+        check(table.remove(id) == first, "stale: remove");
+        check(table.remove(id) == null, "stale: removed twice");
+
+        // the slot is reused, but the old id no longer reaches it
+        int reused = table.add(second);
+        check(reused != id && (reused & 0xFFFFF) == (id & 0xFFFFF), "stale: slot not reused");
+        check(table.get(id) == null, "stale: get resolved the new callback");
+        check(table.remove(id) == null, "stale: remove removed the new callback");
+        table.touch(id, 1);
+        check(table.get(reused) == second && table.size() == 1, "stale: new callback affected");
+
+        // ids that were never handed out
+        check(table.get(0) == null && table.get(reused + 1) == null, "stale: unknown id");
+    }
+
+    static void generationWrap() {
+        CallbackTable table = new CallbackTable(2);
+        Signal cb = (r, e) -> {};
+        int first = table.add(cb);
+        int previous = first;
+        table.remove(first);
+        for (int i = 1; i < GENERATIONS; i++) {
+            int id = table.add(cb);
+            check(id > 0, "wrap: id " + id + " after " + i + " generations");
+            check(id != previous, "wrap: id reused by the next generation");
+            check(table.get(previous) == null, "wrap: previous id still valid");
+            check(table.remove(id) == cb, "wrap: remove");
+            previous = id;
+        }
+
+        // the generation wrapped around to the first one
+        int wrapped = table.add(cb);
+        check(wrapped == first, "wrap: id " + wrapped + " instead of " + first);
+        check(table.get(wrapped) == cb && table.remove(wrapped) == cb, "wrap: wrapped id not valid");
+        check(table.size() == 0, "wrap: size " + table.size());
+    }
+
+    static void reap() {
+        CallbackTable table = new CallbackTable();
+        Signal expiring = (r, e) -> {};
+        Signal kept = (r, e) -> {};
+        int expiringId = table.add(expiring, 100, true);
+        int keptId = table.add(kept, 0, true);
+        check(table.requests() == 2, "reap: requests");
+
+        List<Signal> expired = new ArrayList<>();
+        check(table.reap(50, expired) == 0, "reap: reaped before the deadline");
+        check(table.reap(100, expired) == 1 && expired.get(0) == expiring, "reap: not reaped at the deadline");
+        check(table.get(expiringId) == null && table.get(keptId) == kept, "reap: wrong callback reaped");
+        check(table.requests() == 1 && table.size() == 1, "reap: counts");
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}
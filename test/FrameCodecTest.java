@@ -0,0 +1,163 @@
+package test;
+
+import com.avaidyam.binoculars.remoting.encoding.FrameCodec;
+import org.nustaq.serialization.FSTConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Checks that objects encoded by a FrameCodec are decoded unchanged and in order,
+ * however the bytes arrive, and that the frames are the ones of
+ * FSTConfiguration.encodeToStream/decodeFromStream.
+ */
+public class FrameCodecTest {
+
+    static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
+    static class NotSerializable {
+        int value = 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        roundTrip();
+        gatheringFrame();
+        wireFormat();
+        failures();
+        System.out.println("FrameCodecTest: ok");
+    }
+
+    static List<Object> objects() {
+        List<Object> objects = new ArrayList<>();
+        objects.add("hello");
+        objects.add(42);
+        HashMap<String, int[]> map = new HashMap<>();
+        map.put("a", new int[] { 1, 2, 3 });
+        objects.add(map);
+        String shared = "shared";
+        objects.add(new ArrayList<>(Arrays.asList(shared, shared)));
+        byte[] large = new byte[3 * FrameCodec.INITIAL_BUFFER_SIZE]; // grows all buffers
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte) i;
+        objects.add(large);
+        objects.add(new Object[] { "batch", 1, 0 });
+        return objects;
+    }
+
+    // frames collected in the write buffer, received in chunks of various sizes
+    static void roundTrip() throws Exception {
+        List<Object> objects = objects();
+        FrameCodec writer = new FrameCodec(conf);
+        for (Object o : objects)
+            writer.encode(o);
+        byte[] bytes = Arrays.copyOf(writer.getWriteBuffer(), writer.getWriteLength());
+
+        for (int chunk : new int[] { 1, 3, 4096, bytes.length }) {
+            FrameCodec reader = new FrameCodec(conf);
+            List<Object> decoded = new ArrayList<>();
+            for (int pos = 0; pos < bytes.length; pos += chunk) {
+                reader.receive(ByteBuffer.wrap(bytes, pos, Math.min(chunk, bytes.length - pos)));
+                while (reader.hasFrame())
+                    decoded.add(reader.decode());
+            }
+            check(decoded.size() == objects.size(), "roundtrip: " + decoded.size() + " objects in chunks of " + chunk);
+            for (int i = 0; i < objects.size(); i++)
+                check(same(objects.get(i), decoded.get(i)), "roundtrip: object " + i + " in chunks of " + chunk);
+            List shared = (List) decoded.get(3);
+            check(shared.get(0) == shared.get(1), "roundtrip: shared reference not kept");
+        }
+
+        // the same frames read from a stream
+        FrameCodec reader = new FrameCodec(conf);
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        List<Object> decoded = new ArrayList<>();
+        while (reader.receive(in) >= 0) {
+            while (reader.hasFrame())
+                decoded.add(reader.decode());
+        }
+        check(decoded.size() == objects.size(), "stream: " + decoded.size() + " objects");
+        for (int i = 0; i < objects.size(); i++)
+            check(same(objects.get(i), decoded.get(i)), "stream: object " + i);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        check(Arrays.equals(out.toByteArray(), bytes) && writer.getWriteLength() == 0, "writeTo");
+    }
+
+    // a frame from encodeFrame is the same as one appended by encode
+    static void gatheringFrame() throws Exception {
+        FrameCodec writer = new FrameCodec(conf);
+        FrameCodec reader = new FrameCodec(conf);
+        for (Object o : objects()) {
+            for (ByteBuffer buf : writer.encodeFrame(o))
+                reader.receive(buf);
+            check(reader.hasFrame() && same(o, reader.decode()), "gathering: " + o);
+            check(!reader.hasFrame(), "gathering: extra frame");
+        }
+    }
+
+    // frames can be exchanged with encodeToStream/decodeFromStream
+    static void wireFormat() throws Exception {
+        for (Object o : objects()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            conf.encodeToStream(out, o);
+            FrameCodec reader = new FrameCodec(conf);
+            reader.receive(ByteBuffer.wrap(out.toByteArray()));
+            check(reader.hasFrame() && same(o, reader.decode()), "wire: decode " + o);
+
+            FrameCodec writer = new FrameCodec(conf);
+            writer.encode(o);
+            ByteArrayInputStream in = new ByteArrayInputStream(writer.getWriteBuffer(), 0, writer.getWriteLength());
+            check(same(o, conf.decodeFromStream(in)), "wire: encode " + o);
+        }
+    }
+
+    static void failures() throws Exception {
+        // an object that can not be serialized leaves the codec usable
+        FrameCodec writer = new FrameCodec(conf);
+        try {
+            writer.encode(new NotSerializable());
+            check(false, "failures: unserializable object encoded");
+        } catch (RuntimeException | IOException expected) {
+        }
+        writer.encode("after");
+        FrameCodec reader = new FrameCodec(conf);
+        reader.receive(ByteBuffer.wrap(writer.getWriteBuffer(), 0, writer.getWriteLength()));
+        check(reader.hasFrame() && "after".equals(reader.decode()), "failures: frame after a failed encode");
+
+        reader.receive(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }));
+        try {
+            reader.decode();
+            check(false, "failures: empty frame decoded");
+        } catch (IOException expected) {
+        }
+    }
+
+    static boolean same(Object expected, Object actual) {
+        if (expected instanceof byte[])
+            return actual instanceof byte[] && Arrays.equals((byte[]) expected, (byte[]) actual);
+        if (expected instanceof Object[])
+            return actual instanceof Object[] && Arrays.deepEquals((Object[]) expected, (Object[]) actual);
+        if (expected instanceof HashMap) {
+            HashMap<?, ?> map = (HashMap<?, ?>) expected;
+            if (!(actual instanceof HashMap) || ((HashMap<?, ?>) actual).size() != map.size())
+                return false;
+            for (Object key : map.keySet())
+                if (!Arrays.equals((int[]) map.get(key), (int[]) ((HashMap<?, ?>) actual).get(key)))
+                    return false;
+            return true;
+        }
+        return expected.equals(actual);
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}
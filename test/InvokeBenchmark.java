@@ -0,0 +1,114 @@
+package test;
+
+import com.avaidyam.binoculars.Export;
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.scheduler.Dispatcher;
+import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the MethodHandle invocation path of the Dispatcher against the
+ * reflective one, using the PiCalc (fan-in) and RefChain (request/response)
+ * workloads. Toggles Dispatcher.USE_METHOD_HANDLES between runs.
+ */
+public class InvokeBenchmark {
+
+    public static class PiNucleus extends Nucleus<PiNucleus> {
+        @Export
+        public void calculatePiFor(int start, int nrOfElements, Adder adder) {
+            double acc = 0.0;
+            for (int i = start * nrOfElements; i <= ((start + 1) * nrOfElements - 1); i++) {
+                acc += 4.0 * (1 - (i % 2) * 2) / (2 * i + 1);
+            }
+            adder.add(acc);
+        }
+        @Export
+        public Future<Void> sync() {
+            return new CompletableFuture<>(null);
+        }
+    }
+
+    public static class Adder extends Nucleus<Adder> {
+        double pi = 0;
+        @Export
+        public void add(double d) {
+            pi += d;
+        }
+        @Export
+        public Future<Double> getPi() {
+            return new CompletableFuture<>(pi);
+        }
+    }
+
+    public static class Chain extends Nucleus<Chain> {
+        @Export
+        public Future<String> hello(String s) {
+            return new CompletableFuture<>("Hello:" + s);
+        }
+    }
+
+    // fan-in of numMessages onto a single Adder from numNuclei senders
+    static long piCalc(int numMessages, int step, int numNuclei) {
+        long tim = System.nanoTime();
+        Adder adder = Nucleus.of(Adder.class, 70000);
+        List<PiNucleus> pies = new ArrayList<>(numNuclei);
+        for (int i = 0; i < numNuclei; i++)
+            pies.add(Nucleus.of(PiNucleus.class));
+
+        for (int i = 0; i < numMessages; i += numNuclei)
+            for (int j = 0; j < numNuclei; j++)
+                pies.get(j).calculatePiFor(i + j, step, adder);
+
+        CompletableFuture.allOf(pies.stream().map(PiNucleus::sync)
+                .toArray(Future[]::new)).await();
+        adder.getPi().await();
+        long duration = System.nanoTime() - tim;
+
+        pies.forEach(Nucleus::asyncStop);
+        adder.asyncStop();
+        return duration;
+    }
+
+    // request/response round trips, completed in order
+    static long refChain(int numCalls) {
+        Chain c = Nucleus.of(Chain.class);
+        long tim = System.nanoTime();
+        Future<String> last = null;
+        for (int i = 0; i < numCalls; i++)
+            last = c.hello("POK");
+        last.await();
+        long duration = System.nanoTime() - tim;
+        c.asyncStop();
+        return duration;
+    }
+
+    static void run(String name, boolean methodHandles, Runnable warmup, java.util.function.LongSupplier measure) {
+        Dispatcher.USE_METHOD_HANDLES = methodHandles;
+        for (int i = 0; i < 5; i++)
+            warmup.run();
+        long sum = 0;
+        for (int i = 0; i < 10; i++)
+            sum += measure.getAsLong();
+        System.out.println(name + (methodHandles ? " [MethodHandle]" : " [reflection]  ") + " average: " + sum / 10 / 1000 + " us");
+    }
+
+    public static void main(String arg[]) {
+        final int numMessages = 200000;
+        final int step = 10;
+        final int numCalls = 200000;
+
+        Log.get().setSeverity(Log.Severity.ERROR);
+        ElasticScheduler.DEFQSIZE = 60000;
+
+        for (boolean methodHandles : new boolean[] {false, true}) {
+            run("PiCalc  ", methodHandles, () -> piCalc(numMessages, step, 4), () -> piCalc(numMessages, step, 4));
+            run("RefChain", methodHandles, () -> refChain(numCalls), () -> refChain(numCalls));
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,137 @@
+package test;
+
+import com.avaidyam.binoculars.remoting.shm.MappedRing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Checks that bytes written to a MappedRing are read back unchanged and in order,
+ * across the wrap around of the data area and between two mappings of the same
+ * file, and that the producer never overwrites unread bytes.
+ */
+public class MappedRingTest {
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("MappedRingTest").toFile();
+        try {
+            roundTrip(new File(dir, "roundtrip"));
+            full(new File(dir, "full"));
+            twoMappings(new File(dir, "shared"));
+            invalidFiles(new File(dir, "invalid"));
+        } finally {
+            for (File file : dir.listFiles())
+                file.delete();
+            dir.delete();
+        }
+        System.out.println("MappedRingTest: ok");
+    }
+
+    // writes and reads of odd sizes that wrap around the end of the data area
+    static void roundTrip(File file) throws Exception {
+        MappedRing ring = MappedRing.create(file, 5000);
+        check(ring.getCapacity() == 8192, "roundtrip: capacity " + ring.getCapacity());
+
+        byte[] src = pattern(3001, 7);
+        byte[] dst = new byte[src.length];
+        for (int i = 0; i < 10; i++) {
+            check(ring.write(src, 0, src.length) == src.length, "roundtrip: write " + i);
+            check(ring.available() == src.length, "roundtrip: available " + i);
+            Arrays.fill(dst, (byte) 0);
+            int read = 0;
+            while (read < dst.length)
+                read += ring.read(dst, read, Math.min(1000, dst.length - read));
+            check(Arrays.equals(src, dst), "roundtrip: read " + i);
+            check(ring.available() == 0 && ring.read(dst, 0, 1) == 0, "roundtrip: not drained " + i);
+        }
+    }
+
+    // a full ring takes no more bytes until some have been read
+    static void full(File file) throws Exception {
+        MappedRing ring = MappedRing.create(file, 4096);
+        int capacity = ring.getCapacity();
+        byte[] src = pattern(capacity + 100, 3);
+        check(ring.write(src, 0, src.length) == capacity, "full: write beyond the capacity");
+        check(ring.write(src, capacity, 100) == 0, "full: write to a full ring");
+
+        byte[] dst = new byte[capacity + 100];
+        check(ring.read(dst, 0, 100) == 100, "full: read");
+        check(ring.write(src, capacity, 100) == 100, "full: write after read");
+        check(ring.read(dst, 100, capacity) == capacity, "full: read the rest");
+        check(Arrays.equals(src, dst), "full: bytes changed");
+    }
+
+    // a producer and a consumer thread, each with its own mapping of the file
+    static void twoMappings(File file) throws Exception {
+        MappedRing producer = MappedRing.create(file, 4096);
+        MappedRing consumer = MappedRing.open(file);
+        check(consumer.getCapacity() == producer.getCapacity(), "shared: capacity");
+
+        int total = 4 * 1024 * 1024;
+        Thread writer = new Thread(() -> {
+            byte[] chunk = new byte[777];
+            int written = 0;
+            while (written < total) {
+                int len = Math.min(chunk.length, total - written);
+                for (int i = 0; i < len; i++)
+                    chunk[i] = (byte) ((written + i) * 31);
+                int off = 0;
+                while (off < len) {
+                    int n = producer.write(chunk, off, len - off);
+                    if (n == 0)
+                        Thread.yield(); // full, let the consumer run
+                    off += n;
+                }
+                written += len;
+            }
+            producer.producerHeartbeat(42);
+            producer.close();
+        });
+        writer.setDaemon(true); // left spinning on a full ring if the consumer fails
+        writer.start();
+
+        byte[] chunk = new byte[1000];
+        int read = 0;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (read < total && System.currentTimeMillis() < deadline) {
+            int n = consumer.read(chunk, 0, chunk.length);
+            if (n == 0)
+                Thread.yield();
+            for (int i = 0; i < n; i++)
+                if (chunk[i] != (byte) ((read + i) * 31))
+                    throw new AssertionError("shared: byte " + (read + i) + " changed");
+            read += n;
+        }
+        writer.join(5000);
+        check(read == total, "shared: read " + read + " of " + total);
+        check(consumer.isClosed() && consumer.getProducerHeartbeat() == 42, "shared: header not shared");
+    }
+
+    static void invalidFiles(File file) throws Exception {
+        Files.write(file.toPath(), new byte[1000]);
+        try {
+            MappedRing.open(file);
+            check(false, "invalid: opened a file that is not a ring");
+        } catch (IOException expected) {
+        }
+        try {
+            MappedRing.create(file, 4096);
+            check(false, "invalid: created a ring over an existing file");
+        } catch (IOException expected) {
+        }
+    }
+
+    static byte[] pattern(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) (i * seed + 1);
+        return bytes;
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}
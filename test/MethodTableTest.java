@@ -0,0 +1,88 @@
+package test;
+
+import com.avaidyam.binoculars.Export;
+import com.avaidyam.binoculars.remoting.encoding.MethodTable;
+
+import java.lang.reflect.Method;
+
+/**
+ * Checks that a MethodTable tells overloads apart, only sends a definition once
+ * per connection unless it was lost, bounds the ids it accepts, and never
+ * resolves methods excluded from transport.
+ */
+public class MethodTableTest {
+
+    public static class Target {
+        public void echo(String s) {}
+        public void echo(int i) {}
+        @Export(transport = false) public void local() {}
+    }
+
+    public static class SubTarget extends Target {
+        @Override public void local() {} // not annotated, still not transported
+    }
+
+    public static class Other {
+        public void echo(String s) {}
+    }
+
+    public static void main(String[] args) throws Exception {
+        signatures();
+        sendingSide();
+        receivingSide();
+        transport();
+        System.out.println("MethodTableTest: ok");
+    }
+
+    static void signatures() throws Exception {
+        Method string = Target.class.getMethod("echo", String.class);
+        Method integer = Target.class.getMethod("echo", int.class);
+        check(MethodTable.signatureOf(string).equals("echo(java.lang.String)"), "signature: " + MethodTable.signatureOf(string));
+        check(MethodTable.signatureOf(integer).equals("echo(int)"), "signature: " + MethodTable.signatureOf(integer));
+        check(MethodTable.resolve(Target.class, "echo(int)").equals(integer), "signature: overload");
+        check(MethodTable.resolve(Target.class, "echo(long)") == null, "signature: unknown signature");
+
+        int id = MethodTable.idOf(string);
+        check(id > MethodTable.NONE && id == MethodTable.idOf(string), "signature: id " + id);
+        check(MethodTable.idOf(integer) != id, "signature: overloads share an id");
+    }
+
+    static void sendingSide() {
+        MethodTable table = new MethodTable();
+        check(table.define(5), "sending: first use");
+        check(!table.define(5), "sending: defined twice");
+        table.forget(5);
+        check(table.define(5), "sending: forgotten id not defined again");
+    }
+
+    static void receivingSide() throws Exception {
+        Method string = Target.class.getMethod("echo", String.class);
+        MethodTable table = new MethodTable();
+        check(table.define(3, "echo(java.lang.String)", Target.class).equals(string), "receiving: define");
+        check(table.lookup(3, Target.class).equals(string), "receiving: lookup");
+        check(table.lookup(3, SubTarget.class).equals(string), "receiving: lookup for a subclass");
+        check(table.lookup(3, Other.class).equals(Other.class.getMethod("echo", String.class)), "receiving: lookup for another class");
+        check(table.lookup(4, Target.class) == null, "receiving: undefined id");
+
+        // ids out of range are neither defined nor looked up
+        for (int id : new int[] { MethodTable.NONE, -1, MethodTable.MAX_ID + 1, Integer.MAX_VALUE }) {
+            check(table.define(id, "echo(java.lang.String)", Target.class) == null, "receiving: defined id " + id);
+            check(table.lookup(id, Target.class) == null, "receiving: looked up id " + id);
+        }
+        check(table.define(MethodTable.MAX_ID, "echo(int)", Target.class) != null, "receiving: MAX_ID not accepted");
+    }
+
+    static void transport() throws Exception {
+        check(!MethodTable.isTransported(Target.class.getMethod("local")), "transport: annotated method");
+        check(!MethodTable.isTransported(SubTarget.class.getMethod("local")), "transport: overriding method");
+        check(MethodTable.isTransported(Target.class.getMethod("echo", int.class)), "transport: plain method");
+        check(MethodTable.resolve(Target.class, "local()") == null, "transport: resolved");
+        check(MethodTable.resolve(SubTarget.class, "local()") == null, "transport: resolved for a subclass");
+        check(new MethodTable().define(7, "local()", Target.class) == null, "transport: defined");
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}
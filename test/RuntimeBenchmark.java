@@ -0,0 +1,283 @@
+package test;
+
+import com.avaidyam.binoculars.Export;
+import com.avaidyam.binoculars.Log;
+import com.avaidyam.binoculars.Nucleus;
+import com.avaidyam.binoculars.future.CompletableFuture;
+import com.avaidyam.binoculars.future.Future;
+import com.avaidyam.binoculars.remoting.base.NucleusServer;
+import com.avaidyam.binoculars.remoting.tcp.NIOServerConnector;
+import com.avaidyam.binoculars.remoting.tcp.TCPConnectible;
+import com.avaidyam.binoculars.remoting.tcp.TCPServerConnector;
+import com.avaidyam.binoculars.scheduler.ElasticScheduler;
+import com.avaidyam.binoculars.scheduler.Scheduler;
+import com.avaidyam.binoculars.scheduler.SimpleScheduler;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression benchmarks for the actor runtime. Each benchmark is run for a
+ * number of warmup iterations and then measured; the mean throughput of the
+ * measured iterations (operations per second) is reported along with its
+ * spread. Results can be saved and later compared against, so that a build
+ * whose throughput drops past a threshold fails.
+ *
+ * Usage: RuntimeBenchmark [name...]
+ *   -Dbench.warmup=N      warmup iterations (default 5)
+ *   -Dbench.iterations=N  measured iterations (default 10)
+ *   -Dbench.save=file     save the results as a baseline
+ *   -Dbench.baseline=file compare the results against a saved baseline
+ *   -Dbench.threshold=P   allowed throughput drop in percent (default 10)
+ */
+public class RuntimeBenchmark {
+
+    public static class Counter extends Nucleus<Counter> {
+        long count;
+        long spin;
+        @Export
+        public void inc() {
+            count++;
+            if (spin > 0) {
+                long end = System.nanoTime() + spin;
+                while (System.nanoTime() < end);
+            }
+        }
+        @Export
+        public void setSpin(long nanos) {
+            spin = nanos;
+        }
+        @Export
+        public Future<Long> get() {
+            return new CompletableFuture<>(count);
+        }
+        @Export
+        public Future<String> echo(String s) {
+            return new CompletableFuture<>(s);
+        }
+    }
+
+    /**
+     * A single benchmark: setUp() once, run() per iteration returning the
+     * number of operations done, tearDown() once.
+     */
+    interface Benchmark {
+        default void setUp() throws Exception {}
+        long run() throws Exception;
+        default void tearDown() throws Exception {}
+    }
+
+    // one-way messages to a single nucleus, drained by a final request
+    static Benchmark throughput(Scheduler scheduler, int numMessages) {
+        return new Benchmark() {
+            Counter counter;
+            public void setUp() {
+                counter = Nucleus.of(Counter.class, scheduler);
+            }
+            public long run() {
+                long before = counter.get().await();
+                for (int i = 0; i < numMessages; i++)
+                    counter.inc();
+                if (counter.get().await() - before != numMessages)
+                    throw new AssertionError("lost messages");
+                return numMessages;
+            }
+            public void tearDown() {
+                counter.asyncStop();
+            }
+        };
+    }
+
+    // request/response round trips, each awaited before the next is sent
+    static Benchmark latency(int numCalls) {
+        return new Benchmark() {
+            Counter counter;
+            public void setUp() {
+                counter = Nucleus.of(Counter.class);
+            }
+            public long run() {
+                for (int i = 0; i < numCalls; i++)
+                    counter.echo("ping").await();
+                return numCalls;
+            }
+            public void tearDown() {
+                counter.asyncStop();
+            }
+        };
+    }
+
+    // rounds of requests fanned out over several nuclei and joined with allOf
+    static Benchmark fanOut(int numNuclei, int numRounds, int width) {
+        return new Benchmark() {
+            final List<Counter> counters = new ArrayList<>();
+            public void setUp() {
+                for (int i = 0; i < numNuclei; i++)
+                    counters.add(Nucleus.of(Counter.class));
+            }
+            public long run() {
+                for (int round = 0; round < numRounds; round++) {
+                    List<Future<String>> futures = new ArrayList<>(width);
+                    for (int i = 0; i < width; i++)
+                        futures.add(counters.get(i % numNuclei).echo("fan"));
+                    CompletableFuture.allOf(futures).await();
+                }
+                return numRounds * width;
+            }
+            public void tearDown() {
+                counters.forEach(Nucleus::asyncStop);
+            }
+        };
+    }
+
+    // a fast producer against a slow consumer with a small mailbox
+    static Benchmark backpressure(int queueSize, long spinNanos, int numMessages) {
+        return new Benchmark() {
+            Counter counter;
+            public void setUp() {
+                counter = Nucleus.of(Counter.class, queueSize);
+                counter.setSpin(spinNanos);
+            }
+            public long run() {
+                long before = counter.get().await();
+                for (int i = 0; i < numMessages; i++)
+                    counter.inc();
+                if (counter.get().await() - before != numMessages)
+                    throw new AssertionError("lost messages");
+                return numMessages;
+            }
+            public void tearDown() {
+                counter.asyncStop();
+            }
+        };
+    }
+
+    interface Publisher {
+        Future<NucleusServer> publish(Nucleus facade, int port) throws Exception;
+    }
+
+    // remote round trips over loopback, pipelined and then sequential
+    static Benchmark remote(Publisher publisher, int port, int numPipelined, int numSequential) {
+        return new Benchmark() {
+            NucleusServer server;
+            Counter local;
+            Counter remote;
+            public void setUp() throws Exception {
+                local = Nucleus.of(Counter.class);
+                server = publisher.publish(local, port).await();
+                remote = (Counter) new TCPConnectible<>(Counter.class, "localhost", port)
+                        .connect().await(5000, TimeUnit.MILLISECONDS);
+            }
+            public long run() {
+                List<Future<String>> futures = new ArrayList<>(numPipelined);
+                for (int i = 0; i < numPipelined; i++)
+                    futures.add(remote.echo("remote"));
+                for (Future<String> f : futures)
+                    f.await(10000, TimeUnit.MILLISECONDS);
+                for (int i = 0; i < numSequential; i++)
+                    remote.echo("remote").await(10000, TimeUnit.MILLISECONDS);
+                return numPipelined + numSequential;
+            }
+            public void tearDown() {
+                server.close();
+                local.asyncStop();
+            }
+        };
+    }
+
+    static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+    static {
+        BENCHMARKS.put("throughput.elastic", throughput(new ElasticScheduler(1), 1000000));
+        BENCHMARKS.put("throughput.simple", throughput(new SimpleScheduler(), 1000000));
+        BENCHMARKS.put("latency.future", latency(5000));
+        BENCHMARKS.put("fanout.allOf", fanOut(8, 100, 1000));
+        BENCHMARKS.put("backpressure.full", backpressure(64, 1000, 50000));
+        BENCHMARKS.put("remote.tcp", remote((f, p) -> TCPServerConnector.Publish(f, p, null), 7780, 20000, 20));
+        BENCHMARKS.put("remote.nio", remote((f, p) -> NIOServerConnector.Publish(f, p, null), 7781, 20000, 20));
+    }
+
+    // returns the mean throughput in operations per second
+    static double measure(String name, Benchmark benchmark, int warmup, int iterations) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < warmup; i++)
+                benchmark.run();
+
+            double[] results = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long tim = System.nanoTime();
+                long ops = benchmark.run();
+                results[i] = ops * 1e9 / (System.nanoTime() - tim);
+            }
+
+            double mean = Arrays.stream(results).average().orElse(0);
+            double var = Arrays.stream(results).map(r -> (r - mean) * (r - mean)).sum() / Math.max(1, iterations - 1);
+            System.out.printf("%-20s %14.0f ops/s  +- %5.1f%%  (min %.0f, max %.0f)%n", name, mean,
+                    mean == 0 ? 0 : 100 * Math.sqrt(var) / mean,
+                    Arrays.stream(results).min().orElse(0), Arrays.stream(results).max().orElse(0));
+            return mean;
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    static Properties load(String file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    public static void main(String arg[]) throws Exception {
+        final int warmup = Integer.getInteger("bench.warmup", 5);
+        final int iterations = Integer.getInteger("bench.iterations", 10);
+        final String save = System.getProperty("bench.save");
+        final String baseline = System.getProperty("bench.baseline");
+        final double threshold = Double.parseDouble(System.getProperty("bench.threshold", "10"));
+
+        Log.get().setSeverity(Log.Severity.ERROR);
+        List<String> selected = arg.length > 0 ? Arrays.asList(arg) : new ArrayList<>(BENCHMARKS.keySet());
+
+        Properties results = new Properties();
+        for (String name : selected) {
+            Benchmark benchmark = BENCHMARKS.get(name);
+            if (benchmark == null) {
+                System.err.println("unknown benchmark " + name + ", expected one of " + BENCHMARKS.keySet());
+                System.exit(2);
+            }
+            results.setProperty(name, Long.toString(Math.round(measure(name, benchmark, warmup, iterations))));
+        }
+
+        if (save != null) {
+            try (OutputStream out = new FileOutputStream(save)) {
+                results.store(out, "RuntimeBenchmark baseline, ops/s");
+            }
+        }
+
+        int regressions = 0;
+        if (baseline != null) {
+            Properties previous = load(baseline);
+            for (String name : results.stringPropertyNames()) {
+                String old = previous.getProperty(name);
+                if (old == null)
+                    continue;
+                double change = 100.0 * (Double.parseDouble(results.getProperty(name)) - Double.parseDouble(old)) / Double.parseDouble(old);
+                boolean regressed = change < -threshold;
+                System.out.printf("%-20s %+6.1f%% vs baseline%s%n", name, change, regressed ? "  REGRESSION" : "");
+                if (regressed)
+                    regressions++;
+            }
+        }
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,113 @@
+package test;
+
+import com.avaidyam.binoculars.Channel;
+import com.avaidyam.binoculars.Lane;
+import com.avaidyam.binoculars.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Checks that the inbox of a Channel with OverflowPolicy.SPILL takes messages
+ * beyond its capacity into the spill segment and hands them out in order, and
+ * that it goes back to the bounded ring buffer once the segment is drained.
+ */
+public class SpillingQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        spillAndBack();
+        appendWhileSpilled();
+        concurrentProducers();
+        System.out.println("SpillingQueueTest: ok");
+    }
+
+    static void spillAndBack() {
+        Channel channel = new Channel(16, OverflowPolicy.SPILL);
+        Queue inbox = channel.inbox;
+        int capacity = channel.capacity;
+        check(!channel.isFull(Lane.NORMAL), "spill: empty inbox full");
+
+        for (int i = 0; i < capacity + 10; i++)
+            check(inbox.offer(i), "spill: offer " + i);
+        check(inbox.size() == capacity + 10, "spill: size " + inbox.size());
+        check(!channel.isFull(Lane.NORMAL), "spill: spilling inbox full");
+
+        // the iterator visits the ring buffer, then the spill segment
+        Iterator it = inbox.iterator();
+        for (int i = 0; i < capacity + 10; i++)
+            check(it.hasNext() && it.next().equals(i), "spill: iterator at " + i);
+        check(!it.hasNext(), "spill: iterator past the end");
+
+        for (int i = 0; i < capacity + 10; i++)
+            check(inbox.peek().equals(i) && inbox.poll().equals(i), "spill: poll " + i);
+        check(inbox.poll() == null && inbox.isEmpty(), "spill: not drained");
+
+        // back to the ring buffer: it fills up to its capacity before spilling again
+        for (int i = 0; i < capacity; i++)
+            inbox.offer(i);
+        check(inbox.size() == capacity, "back: size " + inbox.size());
+        for (int i = 0; i < capacity; i++)
+            check(inbox.poll().equals(i), "back: poll " + i);
+        check(inbox.isEmpty(), "back: not drained");
+    }
+
+    // while the spill segment holds messages, new ones go behind them, even with room in the ring
+    static void appendWhileSpilled() {
+        Channel channel = new Channel(16, OverflowPolicy.SPILL);
+        Queue inbox = channel.inbox;
+        int capacity = channel.capacity;
+        int next = 0;
+        for (; next < capacity + 2; next++)
+            inbox.offer(next);
+        check(inbox.poll().equals(0), "append: poll");
+        inbox.offer(next++);
+        for (int i = 1; i < next; i++)
+            check(inbox.poll().equals(i), "append: poll " + i);
+        check(inbox.isEmpty(), "append: not drained");
+    }
+
+    // each producer's messages arrive in order and none are lost, while the consumer drains concurrently
+    static void concurrentProducers() throws Exception {
+        Queue inbox = new Channel(64, OverflowPolicy.SPILL).inbox;
+        int producers = 4, count = 100000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < count; i++)
+                    inbox.offer(new int[] { producer, i });
+            });
+            threads[p].start();
+        }
+
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        List<String> errors = new ArrayList<>();
+        int received = 0;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (received < producers * count && System.currentTimeMillis() < deadline) {
+            int[] message = (int[]) inbox.poll();
+            if (message == null) {
+                Thread.yield();
+                continue;
+            }
+            if (message[1] != last[message[0]] + 1 && errors.size() < 10)
+                errors.add("producer " + message[0] + ": " + message[1] + " after " + last[message[0]]);
+            last[message[0]] = message[1];
+            received++;
+        }
+        for (Thread thread : threads)
+            thread.join();
+        check(errors.isEmpty(), "concurrent: out of order " + errors);
+        check(received == producers * count, "concurrent: received " + received);
+        check(inbox.isEmpty(), "concurrent: not drained");
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,94 @@
+package test;
+
+import com.avaidyam.binoculars.scheduler.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that a TimerWheel runs timeouts in deadline order, never early, across
+ * all levels of the wheel, and that cancelled timeouts do not run.
+ */
+public class TimerWheelTest {
+
+    // 100us ticks, so level 1 starts at 6.4ms and level 2 at 409.6ms
+    static final TimerWheel wheel = new TimerWheel("TimerWheelTest", 100, TimeUnit.MICROSECONDS);
+
+    public static void main(String[] args) throws Exception {
+        ordering();
+        cascading();
+        cancel();
+        System.out.println("TimerWheelTest: ok");
+    }
+
+    // timeouts scheduled in reverse run in deadline order
+    static void ordering() throws Exception {
+        long[] delays = { 50, 40, 30, 20, 10, 1 };
+        List<Long> fired = run(delays);
+        List<Long> expected = new ArrayList<>();
+        for (long delay : delays)
+            expected.add(delay);
+        Collections.sort(expected);
+        check(fired.equals(expected), "ordering: fired " + fired);
+    }
+
+    // timeouts placed in levels 0 to 2 cascade down and run in order, never early
+    static void cascading() throws Exception {
+        long[] delays = { 480, 460, 440, 420, 300, 20, 2 };
+        List<Long> fired = run(delays);
+        List<Long> expected = new ArrayList<>();
+        for (long delay : delays)
+            expected.add(delay);
+        Collections.sort(expected);
+        check(fired.equals(expected), "cascading: fired " + fired);
+    }
+
+    static void cancel() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        TimerWheel.Handle handle = wheel.schedule(20, () -> ran.set(true));
+        check(handle.cancel(), "cancel: first cancel");
+        check(!handle.cancel(), "cancel: second cancel");
+        check(handle.isCancelled() && !handle.isExpired(), "cancel: state");
+
+        // cancelling a timeout of a later level does not affect its neighbours
+        CountDownLatch latch = new CountDownLatch(1);
+        TimerWheel.Handle far = wheel.schedule(100, () -> ran.set(true));
+        TimerWheel.Handle near = wheel.schedule(100, latch::countDown);
+        check(far.cancel(), "cancel: far");
+        check(latch.await(5, TimeUnit.SECONDS), "cancel: neighbour did not run");
+        check(near.isExpired() && !near.cancel(), "cancel: expired timeout cancelled");
+
+        Thread.sleep(50);
+        check(!ran.get(), "cancel: cancelled timeout ran");
+        check(wheel.size() == 0, "cancel: " + wheel.size() + " timeouts left");
+    }
+
+    // schedules a timeout for each delay and returns the delays in the order they ran
+    static List<Long> run(long[] delays) throws Exception {
+        List<Long> fired = Collections.synchronizedList(new ArrayList<>());
+        List<String> early = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        long start = System.nanoTime();
+        for (long delay : delays) {
+            wheel.schedule(delay, () -> {
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (elapsed < delay)
+                    early.add(delay + "ms after " + elapsed + "ms");
+                fired.add(delay);
+                latch.countDown();
+            });
+        }
+        check(latch.await(10, TimeUnit.SECONDS), "timeouts did not run: " + fired);
+        check(early.isEmpty(), "timeouts ran early: " + early);
+        return new ArrayList<>(fired);
+    }
+
+    static void check(boolean ok, String message) {
+        if (!ok)
+            throw new AssertionError(message);
+    }
+}